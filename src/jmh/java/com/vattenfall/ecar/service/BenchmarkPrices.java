@@ -0,0 +1,50 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.model.Price;
+import com.vattenfall.ecar.model.RateType;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates synthetic prices for benchmarks.
+ */
+final class BenchmarkPrices {
+
+    private BenchmarkPrices() {
+    }
+
+    /**
+     * Creates a basic price and the given number of disjoint special prices, each of them
+     * lasting half of an equal part of the day. The last one contains midnight.
+     *
+     * @param specialPrices number of special prices, at most 720
+     * @return prices with ids starting from 1
+     */
+    static List<Price> create(int specialPrices) {
+        List<Price> prices = new ArrayList<>();
+        prices.add(createPrice(1, 0.25, null, null));
+        int part = specialPrices == 0 ? 0 : 1440 / specialPrices;
+        for (int i = 0; i < specialPrices; i++) {
+            int start = (i * part + part / 2 + 60) % 1440;
+            int end = (start + part / 2) % 1440;
+            prices.add(createPrice(i + 2, 0.1 + 0.01 * i, toTime(start), toTime(end)));
+        }
+        return prices;
+    }
+
+    static Price createPrice(int id, double rate, LocalTime start, LocalTime end) {
+        Price price = new Price();
+        price.setId(id);
+        price.setMinuteRate(rate);
+        price.setStartHour(start);
+        price.setEndHour(end);
+        price.setRateType(start == null ? RateType.BASIC : RateType.SPECIAL);
+        return price;
+    }
+
+    static LocalTime toTime(int minuteOfDay) {
+        return LocalTime.of(minuteOfDay / 60, minuteOfDay % 60);
+    }
+}
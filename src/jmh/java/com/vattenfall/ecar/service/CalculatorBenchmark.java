@@ -0,0 +1,83 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.model.Price;
+import com.vattenfall.ecar.model.TariffVersion;
+import com.vattenfall.ecar.repository.CustomerRepository;
+import com.vattenfall.ecar.repository.PriceRepository;
+import com.vattenfall.ecar.repository.TariffVersionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Measures {@link Calculator#calculate(String, Long, LocalDateTime, LocalDateTime)} with prices
+ * and customers already in memory, with or without the results cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorBenchmark {
+
+    @Param({"0", "4", "24"})
+    private int specialPrices;
+
+    @Param({"0", "7", "365"})
+    private int days;
+
+    @Param({"false", "true"})
+    private boolean vip;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private Calculator calculator;
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    @Setup
+    public void setUp() {
+        PriceRepository priceRepository = Mockito.mock(PriceRepository.class);
+        doReturn(BenchmarkPrices.create(specialPrices)).when(priceRepository).findByTariffSet(Price.DEFAULT_TARIFF_SET);
+        CustomerIndex customerIndex = new CustomerIndex(Mockito.mock(CustomerRepository.class),
+                new NoOpCacheManager());
+        customerIndex.put(1L, vip);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TariffVersionRepository tariffVersionRepository = Mockito.mock(TariffVersionRepository.class);
+        TariffVersion tariffVersion = new TariffVersion();
+        tariffVersion.setTariffSet(Price.DEFAULT_TARIFF_SET);
+        tariffVersion.setVersion(1L);
+        doReturn(Collections.singletonList(tariffVersion)).when(tariffVersionRepository).findAll();
+        doReturn(Optional.of(tariffVersion)).when(tariffVersionRepository).findById(Price.DEFAULT_TARIFF_SET);
+        PriceService priceService = new PriceService(priceRepository, tariffVersionRepository,
+                Mockito.mock(PlatformTransactionManager.class), meterRegistry);
+        CacheManager cacheManager = cached
+                ? new CaffeineCacheManager("results")
+                : new SimpleCacheManager();
+        calculator = new Calculator(priceService, customerIndex, meterRegistry, cacheManager);
+        calculator.setVipDiscount("10%");
+        start = LocalDateTime.of(2019, Month.APRIL, 5, 10, 17);
+        end = start.plusDays(days).plusHours(7).plusMinutes(31);
+    }
+
+    @Benchmark
+    public Double calculate() {
+        return calculator.calculate(Price.DEFAULT_TARIFF_SET, 1L, start, end);
+    }
+}
@@ -0,0 +1,47 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.service.Intervals.DateTimeInterval;
+import com.vattenfall.ecar.service.Intervals.TimeInterval;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures both overloads of <code>Intervals.intersectionInMinutes</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntervalsBenchmark {
+
+    @Param({"0", "7", "365"})
+    private int days;
+
+    private DateTimeInterval dateTimeInterval;
+    private TimeInterval timeInterval;
+    private TimeInterval timeIntervalContainingMidnight;
+
+    @Setup
+    public void setUp() {
+        LocalDateTime start = LocalDateTime.of(2019, Month.APRIL, 5, 10, 17);
+        dateTimeInterval = new DateTimeInterval(start, start.plusDays(days).plusHours(7).plusMinutes(31));
+        timeInterval = new TimeInterval(LocalTime.of(12, 15), LocalTime.of(16, 0));
+        timeIntervalContainingMidnight = new TimeInterval(LocalTime.of(22, 0), LocalTime.of(3, 15));
+    }
+
+    @Benchmark
+    public long dateTimeIntervalAndTimeInterval() {
+        return Intervals.intersectionInMinutes(dateTimeInterval, timeIntervalContainingMidnight);
+    }
+
+    @Benchmark
+    public long twoTimeIntervals() {
+        return Intervals.intersectionInMinutes(timeInterval, timeIntervalContainingMidnight);
+    }
+}
@@ -0,0 +1,49 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.model.Price;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link OverlappingValidator#validate} of a special price which does not cause
+ * violations, both against a prebuilt {@link PriceIndex} and against a collection of prices
+ * which has to be indexed first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverlappingValidatorBenchmark {
+
+    @Param({"0", "4", "24", "240"})
+    private int specialPrices;
+
+    private OverlappingValidator validator = new OverlappingValidator();
+    private List<Price> prices;
+    private PriceIndex index;
+    private Price price;
+
+    @Setup
+    public void setUp() {
+        prices = BenchmarkPrices.create(specialPrices);
+        index = PriceIndex.of(prices);
+        price = BenchmarkPrices.createPrice(0, 0.5, LocalTime.of(1, 0), LocalTime.of(1, 1));
+    }
+
+    @Benchmark
+    public Price validate() {
+        validator.validate(price, index);
+        return price;
+    }
+
+    @Benchmark
+    public Price validateCollection() {
+        validator.validate(price, prices);
+        return price;
+    }
+}
@@ -0,0 +1,85 @@
+package com.vattenfall.ecar.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal blocking http client based on {@link HttpURLConnection}, which keeps connections alive
+ * as long as responses are read to the end. Since {@link HttpURLConnection} does not support
+ * PATCH method, such requests are sent as POST with <code>_method</code> parameter, which is
+ * translated back by the hidden method filter of Spring MVC. Instances are not thread-safe,
+ * every worker thread has its own one.
+ */
+class LoadClient {
+
+    private final String baseUrl;
+    private final byte[] buffer = new byte[8192];
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+    LoadClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Sends a request and reads the whole response.
+     *
+     * @param method http method
+     * @param path   path with query string
+     * @param body   json body or null
+     * @return response status and body
+     * @throws IOException if the request cannot be sent
+     */
+    Response send(String method, String path, String body) throws IOException {
+        if ("PATCH".equals(method)) {
+            path = path + (path.contains("?") ? "&" : "?") + "_method=PATCH";
+            method = "POST";
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        content.reset();
+        if (input != null) {
+            try (InputStream stream = input) {
+                for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+                    content.write(buffer, 0, read);
+                }
+            }
+        }
+        return new Response(status, new String(content.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    static class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        boolean isSuccessful() {
+            return status < 400;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        String getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.vattenfall.ecar.load;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vattenfall.ecar.ECarApplication;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Starts the application with a synthetic tariff and synthetic customers, sends a configurable mix
+ * of requests to <code>/prices</code> from many threads and prints throughput and latency percentiles
+ * of every kind of request. Run it with the <code>loadtest</code> profile:</p>
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dload.threads=32 -Dload.mix=calculate:80,create:10,update:10
+ * </pre>
+ *
+ * <p>Supported system properties are <code>load.threads</code>, <code>load.warmup</code> and
+ * <code>load.duration</code> in seconds, <code>load.customers</code>, <code>load.special-prices</code>,
+ * <code>load.mix</code> with weights of {@link Operation operations} and <code>load.histograms</code>,
+ * which prints whole latency distributions.</p>
+ *
+ * <p>Every worker sends the next request as soon as the previous one is answered, so the latencies
+ * are the service times under the given concurrency rather than response times at a given arrival rate.</p>
+ */
+public class LoadGenerator {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmm");
+    private static final LocalDateTime FIRST_START = LocalDateTime.of(2019, Month.APRIL, 1, 0, 0);
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final int threads;
+    private final long warmupSeconds;
+    private final long durationSeconds;
+    private final int customers;
+    private final int specialPrices;
+    private final boolean histograms;
+    private final Map<Operation, Integer> mix;
+    private final int totalWeight;
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> failures = new EnumMap<>(Operation.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Integer> specialPriceIds = new ArrayList<>();
+    private String baseUrl;
+
+    LoadGenerator(Properties properties) {
+        threads = Integer.parseInt(properties.getProperty("load.threads", "16"));
+        warmupSeconds = Long.parseLong(properties.getProperty("load.warmup", "10"));
+        durationSeconds = Long.parseLong(properties.getProperty("load.duration", "30"));
+        customers = Integer.parseInt(properties.getProperty("load.customers", "100000"));
+        specialPrices = Integer.parseInt(properties.getProperty("load.special-prices", "24"));
+        histograms = Boolean.parseBoolean(properties.getProperty("load.histograms", "false"));
+        mix = parseMix(properties.getProperty("load.mix", "calculate:90,list:5,create:3,update:2"));
+        totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        if (specialPrices < 1 || specialPrices > MINUTES_PER_DAY / 2) {
+            throw new IllegalArgumentException("Number of special prices has to be between 1 and 720");
+        }
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_MICROS, 3));
+            failures.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(System.getProperties()).run(System.out);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            Operation operation = Operation.of(parts[0]);
+            if (operation == Operation.DELETE) {
+                throw new IllegalArgumentException("Deletions follow creations and cannot be mixed");
+            }
+            weights.put(operation, Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    void run(PrintStream out) throws Exception {
+        Path customersFile = writeCustomers();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ECarApplication.class)
+                .run("--server.port=0", "--spring.jmx.enabled=false", "--customers=" + customersFile.toUri())) {
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            replacePrices();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> work(end)));
+            }
+            executor.shutdown();
+            TimeUnit.NANOSECONDS.sleep(warmupEnd - System.nanoTime());
+            recorders.values().forEach(Recorder::getIntervalHistogram);
+            failures.values().forEach(LongAdder::reset);
+            long start = System.nanoTime();
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+            report(out, System.nanoTime() - start);
+        } finally {
+            Files.deleteIfExists(customersFile);
+        }
+    }
+
+    /**
+     * Writes customers with consecutive ids starting from 1, every third of them is a vip.
+     */
+    private Path writeCustomers() throws IOException {
+        Path file = Files.createTempFile("customers", ".json");
+        try (JsonGenerator generator = new JsonFactory().createGenerator(file.toFile(), JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (int id = 1; id <= customers; id++) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", id);
+                generator.writeBooleanField("vip", id % 3 == 0);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        return file;
+    }
+
+    /**
+     * Replaces all prices with a basic price and special prices, which cover the first half
+     * of equal parts of the day. The second halves are left free for created prices.
+     */
+    private void replacePrices() throws IOException {
+        ArrayNode prices = objectMapper.createArrayNode();
+        prices.addObject().put("minuteRate", 0.25);
+        int part = MINUTES_PER_DAY / specialPrices;
+        for (int i = 0; i < specialPrices; i++) {
+            prices.addObject()
+                    .put("minuteRate", 0.1 + 0.01 * (i % 10))
+                    .put("startHour", toTime(i * part))
+                    .put("endHour", toTime(i * part + part / 2));
+        }
+        LoadClient.Response response = new LoadClient(baseUrl).send("PUT", "/prices", prices.toString());
+        if (!response.isSuccessful()) {
+            throw new IllegalStateException("Prices cannot be replaced: " + response.getBody());
+        }
+        for (JsonNode price : objectMapper.readTree(response.getBody())) {
+            if (price.has("startHour")) {
+                specialPriceIds.add(price.get("id").asInt());
+            }
+        }
+    }
+
+    private Void work(long end) throws IOException {
+        LoadClient client = new LoadClient(baseUrl);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < end) {
+            execute(client, pickOperation(random), random);
+        }
+        return null;
+    }
+
+    private Operation pickOperation(ThreadLocalRandom random) {
+        int weight = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            weight -= entry.getValue();
+            if (weight < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Weights of operations are inconsistent");
+    }
+
+    private void execute(LoadClient client, Operation operation, ThreadLocalRandom random) throws IOException {
+        switch (operation) {
+            case CALCULATE:
+                LocalDateTime start = FIRST_START.plusMinutes(random.nextInt(MINUTES_PER_WEEK));
+                LocalDateTime end = start.plusMinutes(1 + random.nextInt(480));
+                String path = "/prices?customer-id=" + (1 + random.nextInt(customers))
+                        + "&start=" + DATE_FORMAT.format(start) + "&end=" + DATE_FORMAT.format(end);
+                timed(operation, () -> client.send("GET", path, null));
+                break;
+            case LIST:
+                timed(operation, () -> client.send("GET", "/prices?page=0&size=100", null));
+                break;
+            case CREATE:
+                LoadClient.Response created = timed(operation, () -> client.send("POST", "/prices",
+                        createBody(random)));
+                if (created.isSuccessful()) {
+                    int id = objectMapper.readTree(created.getBody()).get("id").asInt();
+                    timed(Operation.DELETE, () -> client.send("DELETE", "/prices/" + id, null));
+                }
+                break;
+            case UPDATE:
+                int id = specialPriceIds.get(random.nextInt(specialPriceIds.size()));
+                ObjectNode body = objectMapper.createObjectNode().put("minuteRate", 0.1 + random.nextInt(10) / 100.0);
+                timed(operation, () -> client.send("PATCH", "/prices/" + id, body.toString()));
+                break;
+            default:
+                throw new IllegalArgumentException("Operation " + operation + " cannot be mixed");
+        }
+    }
+
+    /**
+     * Creates a one minute long special price at a random minute of a free period.
+     */
+    private String createBody(ThreadLocalRandom random) {
+        int part = MINUTES_PER_DAY / specialPrices;
+        int free = part - part / 2;
+        int start = random.nextInt(specialPrices) * part + part / 2 + random.nextInt(free);
+        return objectMapper.createObjectNode()
+                .put("minuteRate", 0.05)
+                .put("startHour", toTime(start))
+                .put("endHour", toTime(start + 1))
+                .toString();
+    }
+
+    private LoadClient.Response timed(Operation operation, Request request) throws IOException {
+        long start = System.nanoTime();
+        LoadClient.Response response = request.send();
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        recorders.get(operation).recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+        if (!response.isSuccessful()) {
+            failures.get(operation).increment();
+        }
+        return response;
+    }
+
+    private void report(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%n%d threads, %d customers, %d special prices, %.1f s%n", threads, customers, specialPrices,
+                seconds);
+        out.printf("%-10s %10s %9s %11s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "failures", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        long totalFailures = 0;
+        List<Histogram> measured = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            long failed = failures.get(operation).sum();
+            if (histogram.getTotalCount() > 0) {
+                printRow(out, operation.getLabel(), histogram, failed, seconds);
+                histogram.setTag(operation.getLabel());
+                measured.add(histogram);
+                total.add(histogram);
+                totalFailures += failed;
+            }
+        }
+        printRow(out, "total", total, totalFailures, seconds);
+        if (histograms) {
+            for (Histogram histogram : measured) {
+                out.printf("%nLatency distribution of %s in ms%n", histogram.getTag());
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static void printRow(PrintStream out, String label, Histogram histogram, long failed, double seconds) {
+        out.printf("%-10s %10d %9d %11.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n", label, histogram.getTotalCount(), failed,
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private static String toTime(int minuteOfDay) {
+        return LocalTime.of(minuteOfDay % MINUTES_PER_DAY / 60, minuteOfDay % 60).toString();
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        LoadClient.Response send() throws IOException;
+    }
+}
@@ -0,0 +1,43 @@
+package com.vattenfall.ecar.load;
+
+import java.util.Locale;
+
+/**
+ * Requests sent by the load generator.
+ */
+enum Operation {
+
+    /**
+     * GET <code>/prices</code> with a customer and a charging process.
+     */
+    CALCULATE,
+
+    /**
+     * GET <code>/prices</code> returning the first page of prices.
+     */
+    LIST,
+
+    /**
+     * POST <code>/prices</code> with a short special price in a free period, which is deleted
+     * afterwards. Concurrently created prices may overlap and be rejected.
+     */
+    CREATE,
+
+    /**
+     * DELETE <code>/prices/{id}</code> of a price created before.
+     */
+    DELETE,
+
+    /**
+     * PATCH <code>/prices/{id}</code> changing the rate of an existing special price.
+     */
+    UPDATE;
+
+    static Operation of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    String getLabel() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
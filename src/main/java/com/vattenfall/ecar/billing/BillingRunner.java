@@ -0,0 +1,190 @@
+package com.vattenfall.ecar.billing;
+
+import com.vattenfall.ecar.dto.CalculationRequestDto;
+import com.vattenfall.ecar.dto.CalculationResultDto;
+import com.vattenfall.ecar.init.CustomersLoader;
+import com.vattenfall.ecar.service.Calculator;
+import lombok.SneakyThrows;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>Runs in the <code>billing</code> profile and prices charging processes read from a csv file
+ * whose location is specified in the property <code>billing.input</code>. Every line of the file
+ * has the form <code>customerId,start,end</code> with datetime values in <code>yyyyMMdd'T'HHmm</code>
+ * format. Blank lines and lines starting with <code>#</code> are skipped.</p>
+ *
+ * <p>Priced processes are written to the file specified in the property <code>billing.output</code>.
+ * Every input line is copied and extended with the total price and an error message, one of which
+ * is empty.</p>
+ *
+ * <p>The input file is read in chunks of <code>billing.chunk-size</code> lines, so memory usage does
+ * not depend on the size of the file. Every chunk is priced in parallel on a fork-join pool.
+ * The runner is ordered after {@link CustomersLoader}, so all customers are loaded before pricing.</p>
+ */
+@Component
+@Profile("billing")
+@Order(CustomersLoader.ORDER + 1)
+public class BillingRunner implements CommandLineRunner {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmm");
+
+    private final Logger logger = LoggerFactory.getLogger(BillingRunner.class);
+
+    @Value("${billing.input}")
+    private String inputLocation;
+
+    @Value("${billing.output}")
+    private String outputLocation;
+
+    @Value("${billing.chunk-size:10000}")
+    private int chunkSize;
+
+    @Value("${billing.slice-size:500}")
+    private int sliceSize;
+
+    @Value("${billing.parallelism:0}")
+    private int parallelism;
+
+    private Calculator calculator;
+
+    /**
+     * @param calculator autowired by Spring on bean creation
+     */
+    public BillingRunner(Calculator calculator) {
+        this.calculator = calculator;
+    }
+
+    /**
+     * Prices all charging processes from the input file.
+     *
+     * @param args main method arguments
+     */
+    @Override
+    @SneakyThrows
+    public void run(String... args) {
+        long startTime = System.nanoTime();
+        long count = 0;
+        ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism) : new ForkJoinPool();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(inputLocation));
+             BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputLocation))) {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                chunk.add(line);
+                if (chunk.size() == chunkSize) {
+                    count += process(pool, chunk, writer);
+                    chunk.clear();
+                }
+            }
+            count += process(pool, chunk, writer);
+        } finally {
+            pool.shutdown();
+        }
+        long millis = (System.nanoTime() - startTime) / 1_000_000;
+        logger.info("{} charging processes priced in {} ms", count, millis);
+    }
+
+    @SneakyThrows
+    private int process(ForkJoinPool pool, List<String> chunk, BufferedWriter writer) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        for (String line : pool.invoke(new PricingTask(chunk))) {
+            writer.write(line);
+            writer.newLine();
+        }
+        return chunk.size();
+    }
+
+    private CalculationRequestDto parse(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 3) {
+            return null;
+        }
+        try {
+            CalculationRequestDto request = new CalculationRequestDto();
+            request.setCustomerId(Long.valueOf(fields[0].trim()));
+            request.setStart(LocalDateTime.parse(fields[1].trim(), FORMATTER));
+            request.setEnd(LocalDateTime.parse(fields[2].trim(), FORMATTER));
+            return request;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private String format(String line, CalculationResultDto result) {
+        String total = result.getTotal() == null ? "" : BigDecimal.valueOf(result.getTotal()).toPlainString();
+        String error = result.getError() == null ? "" : '"' + result.getError().replace("\"", "\"\"") + '"';
+        return line + ',' + total + ',' + error;
+    }
+
+    /**
+     * Splits lines until they fit in a single slice, which is priced with one call to the calculator.
+     */
+    private class PricingTask extends RecursiveTask<List<String>> {
+
+        private final List<String> lines;
+
+        private PricingTask(List<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        protected List<String> compute() {
+            if (lines.size() <= sliceSize) {
+                return price();
+            }
+            int middle = lines.size() / 2;
+            PricingTask left = new PricingTask(lines.subList(0, middle));
+            PricingTask right = new PricingTask(lines.subList(middle, lines.size()));
+            left.fork();
+            List<String> rightOutput = right.compute();
+            List<String> output = new ArrayList<>(left.join());
+            output.addAll(rightOutput);
+            return output;
+        }
+
+        private List<String> price() {
+            CalculationRequestDto[] parsed = new CalculationRequestDto[lines.size()];
+            List<CalculationRequestDto> requests = new ArrayList<>(lines.size());
+            for (int i = 0; i < parsed.length; i++) {
+                parsed[i] = parse(lines.get(i));
+                if (parsed[i] != null) {
+                    requests.add(parsed[i]);
+                }
+            }
+            Iterator<CalculationResultDto> results = requests.isEmpty()
+                    ? Collections.emptyIterator()
+                    : calculator.calculateAll(requests).iterator();
+            List<String> output = new ArrayList<>(lines.size());
+            for (int i = 0; i < parsed.length; i++) {
+                String line = lines.get(i);
+                output.add(parsed[i] == null ? line + ",,\"Invalid line\"" : format(line, results.next()));
+            }
+            return output;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.vattenfall.ecar.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * <p>Configures bounded Caffeine caches. Every cache is built from its own specification
+ * given in {@link CacheSpecs}, so size bounds, expiration, refreshing and statistics
+ * can be set per cache in <code>application.properties</code>.</p>
+ *
+ * <p>Caches with a {@link NamedCacheLoader} are built as loading caches. Statistics of caches
+ * specified with <code>recordStats</code> are published by Actuator as <code>cache.*</code> metrics.</p>
+ */
+@Configuration
+@EnableConfigurationProperties(CacheSpecs.class)
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(CacheSpecs cacheSpecs, ObjectProvider<NamedCacheLoader> loaders) {
+        Map<String, NamedCacheLoader> loadersByName = loaders.stream()
+                .collect(Collectors.toMap(NamedCacheLoader::getCacheName, Function.identity()));
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(cacheSpecs.getSpecs().entrySet().stream()
+                .map(spec -> createCache(spec.getKey(), spec.getValue(), loadersByName.get(spec.getKey())))
+                .collect(Collectors.toList()));
+        return cacheManager;
+    }
+
+    private CaffeineCache createCache(String name, String spec, NamedCacheLoader loader) {
+        Caffeine<Object, Object> builder = Caffeine.from(spec);
+        return loader == null
+                ? new CaffeineCache(name, builder.build())
+                : new CaffeineCache(name, builder.build(loader));
+    }
+}
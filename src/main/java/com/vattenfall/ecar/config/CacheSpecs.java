@@ -0,0 +1,24 @@
+package com.vattenfall.ecar.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caffeine specifications of caches read from properties with the prefix <code>cache.specs</code>,
+ * e.g. <code>cache.specs.customers=maximumSize=1000,expireAfterWrite=1h,recordStats</code>.
+ * The syntax of specifications is described in {@link com.github.benmanes.caffeine.cache.CaffeineSpec}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("cache")
+public class CacheSpecs {
+
+    /**
+     * Specifications by cache name.
+     */
+    private Map<String, String> specs = new LinkedHashMap<>();
+}
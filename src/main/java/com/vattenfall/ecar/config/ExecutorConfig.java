@@ -0,0 +1,41 @@
+package com.vattenfall.ecar.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Configures the bounded executor of asynchronous calculations. Its pool size and queue capacity
+ * are specified in the properties <code>calculation.pool-size</code> and <code>calculation.queue-capacity</code>.
+ * When all threads are busy and the queue is full, new tasks are rejected immediately with
+ * {@link TaskRejectedException} and counted by <code>ecar.rejections</code> counter.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor calculationExecutor(@Value("${calculation.pool-size:8}") int poolSize,
+                                                      @Value("${calculation.queue-capacity:100}") int queueCapacity,
+                                                      MeterRegistry meterRegistry) {
+        Counter rejections = Counter.builder("ecar.rejections")
+                .description("Rejected requests")
+                .tag("exception", TaskRejectedException.class.getSimpleName())
+                .register(meterRegistry);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("calculation-");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejections.increment();
+            throw new RejectedExecutionException("Calculation queue is full");
+        });
+        return executor;
+    }
+}
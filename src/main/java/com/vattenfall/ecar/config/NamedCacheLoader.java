@@ -0,0 +1,19 @@
+package com.vattenfall.ecar.config;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
+/**
+ * Loader of values of the cache with the given name. A cache with a loader is built as
+ * a loading cache, so its specification may contain <code>refreshAfterWrite</code>,
+ * which reloads entries asynchronously while the old values are still served.
+ *
+ * <p>Loaded values are stored as they are, so a missing value has to be represented
+ * by {@link org.springframework.cache.support.NullValue#INSTANCE}.</p>
+ */
+public interface NamedCacheLoader extends CacheLoader<Object, Object> {
+
+    /**
+     * @return name of the cache which is loaded
+     */
+    String getCacheName();
+}
@@ -0,0 +1,15 @@
+package com.vattenfall.ecar.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables scheduled tasks unless tariff polling is disabled, which is the case in offline billing,
+ * whose process has to exit once the input file is priced.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "tariff.polling.enabled", matchIfMissing = true)
+public class SchedulingConfig {
+}
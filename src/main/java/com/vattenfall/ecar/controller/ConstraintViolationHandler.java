@@ -0,0 +1,28 @@
+package com.vattenfall.ecar.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Handles {@link ConstraintViolationException} thrown by validated controllers
+ * and maps it to http status 400 instead of default 500.
+ */
+@RestControllerAdvice
+public class ConstraintViolationHandler {
+
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<Map<String, String>> handleConstraintViolation(ConstraintViolationException exception) {
+        String violations = exception.getConstraintViolations().stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.joining(", "));
+        return ResponseEntity.badRequest()
+                .body(Collections.singletonMap("message", violations));
+    }
+}
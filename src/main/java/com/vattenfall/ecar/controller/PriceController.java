@@ -1,43 +1,89 @@
 package com.vattenfall.ecar.controller;
 
+import com.vattenfall.ecar.dto.CalculationRequestDto;
+import com.vattenfall.ecar.dto.CalculationResultDto;
 import com.vattenfall.ecar.dto.PriceDto;
+import com.vattenfall.ecar.dto.PricePageDto;
 import com.vattenfall.ecar.exception.NoSuchPriceException;
 import com.vattenfall.ecar.exception.PriceException;
 import com.vattenfall.ecar.service.Calculator;
 import com.vattenfall.ecar.service.PriceService;
+import com.vattenfall.ecar.service.TariffSnapshot;
 import com.vattenfall.ecar.validation.NewPrice;
+import com.vattenfall.ecar.validation.TariffSetName;
 import lombok.SneakyThrows;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
-import javax.validation.ConstraintViolation;
-import javax.validation.ConstraintViolationException;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static com.vattenfall.ecar.model.Price.DEFAULT_TARIFF_SET;
 
 /**
  * Basic controller for price management.
- * GET, POST, DELETE and PATCH methods are supported.
+ * GET, POST, PUT, DELETE and PATCH methods are supported.
+ * All of them accept request parameter <code>tariff-set</code> selecting the set of prices,
+ * by default the <code>default</code> one is used.
  */
 @RestController
 @RequestMapping("/prices")
 @Validated
 public class PriceController {
 
+    private static final String TARIFF_SET = "tariff-set";
+
     private Calculator calculator;
     private PriceService priceService;
+    private Executor calculationExecutor;
 
-    public PriceController(Calculator calculator, PriceService priceService) {
+    public PriceController(Calculator calculator, PriceService priceService,
+                           @Qualifier("calculationExecutor") Executor calculationExecutor) {
         this.calculator = calculator;
         this.priceService = priceService;
+        this.calculationExecutor = calculationExecutor;
+    }
+
+    /**
+     * Handles GET method without calculation parameters and returns a page of prices.
+     * The response carries a strong entity tag of the tariff state, so requests with a matching
+     * <code>If-None-Match</code> header are answered with http status 304 without a body.
+     *
+     * @param tariffSet name of the tariff set
+     * @param page      number of the page starting from 0
+     * @param size      size of the page
+     * @param request   current request
+     * @return page of prices or null if the prices have not been modified
+     */
+    @GetMapping(params = "!customer-id")
+    public PricePageDto findPrices(@TariffSetName
+                                   @RequestParam(name = TARIFF_SET, defaultValue = DEFAULT_TARIFF_SET)
+                                           String tariffSet,
+                                   @Min(0) @RequestParam(name = "page", defaultValue = "0") int page,
+                                   @Min(1) @Max(1000) @RequestParam(name = "size", defaultValue = "100") int size,
+                                   WebRequest request) {
+        TariffSnapshot snapshot = priceService.getSnapshot(tariffSet);
+        if (request.checkNotModified("\"" + snapshot.getTag() + "-" + page + "-" + size + "\"")) {
+            return null;
+        }
+        return priceService.findPage(snapshot, page, size);
     }
 
     /**
@@ -47,7 +93,10 @@ public class PriceController {
      * @return total price
      */
     @GetMapping(params = {"customer-id", "start", "end"})
-    public Map<String, Double> calculatePrice(@RequestParam("customer-id") Long customerId,
+    public Map<String, Double> calculatePrice(@TariffSetName
+                                              @RequestParam(name = TARIFF_SET, defaultValue = DEFAULT_TARIFF_SET)
+                                                      String tariffSet,
+                                              @RequestParam("customer-id") Long customerId,
                                               @DateTimeFormat(pattern = "yyyyMMdd'T'HHmm")
                                               @RequestParam("start") LocalDateTime start,
                                               @DateTimeFormat(pattern = "yyyyMMdd'T'HHmm")
@@ -55,63 +104,143 @@ public class PriceController {
         if (start.isAfter(end)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date has to be before end date");
         }
-        return Collections.singletonMap("total", calculator.calculate(customerId, start, end));
+        return Collections.singletonMap("total", calculator.calculate(tariffSet, customerId, start, end));
+    }
+
+    /**
+     * Handles GET method with the same request parameters as {@link #calculatePrice} without blocking
+     * the servlet thread. The price is calculated by a bounded executor, when it is saturated the request
+     * is rejected immediately with http status 503. Exceptions of the calculation complete the result as they are,
+     * without {@link java.util.concurrent.CompletionException} wrapping, so they are handled like synchronous ones.
+     *
+     * @return total price completed asynchronously
+     */
+    @GetMapping(path = "/async", params = {"customer-id", "start", "end"})
+    public CompletableFuture<Map<String, Double>> calculatePriceAsync(
+            @TariffSetName @RequestParam(name = TARIFF_SET, defaultValue = DEFAULT_TARIFF_SET) String tariffSet,
+            @RequestParam("customer-id") Long customerId,
+            @DateTimeFormat(pattern = "yyyyMMdd'T'HHmm") @RequestParam("start") LocalDateTime start,
+            @DateTimeFormat(pattern = "yyyyMMdd'T'HHmm") @RequestParam("end") LocalDateTime end) {
+        if (start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date has to be before end date");
+        }
+        CompletableFuture<Map<String, Double>> total = new CompletableFuture<>();
+        calculationExecutor.execute(() -> {
+            try {
+                total.complete(Collections.singletonMap("total",
+                        calculator.calculate(tariffSet, customerId, start, end)));
+            } catch (RuntimeException e) {
+                total.completeExceptionally(e);
+            }
+        });
+        return total;
+    }
+
+    /**
+     * Handles POST requests with many charging processes and calculates their total prices.
+     * Processes which cannot be priced, including ones of invalid tariff sets, are reported with an error message.
+     *
+     * @param requests charging processes
+     * @return total prices or errors in the order of the passed processes
+     */
+    @PostMapping("/calculations")
+    public List<CalculationResultDto> calculatePrices(@RequestBody List<CalculationRequestDto> requests) {
+        return calculator.calculateAll(requests);
     }
 
     /**
      * Handles POST requests and creates new prices.
      *
-     * @param newPrice valid body of the request
+     * @param tariffSet name of the tariff set
+     * @param newPrice  valid body of the request
      * @return created price
      * @throws PriceException if the price cannot be created
      */
     @PostMapping
     @SneakyThrows
-    public ResponseEntity<PriceDto> addNewPrice(@Valid @NewPrice @RequestBody PriceDto newPrice) {
+    public ResponseEntity<PriceDto> addNewPrice(@TariffSetName
+                                                @RequestParam(name = TARIFF_SET, defaultValue = DEFAULT_TARIFF_SET)
+                                                        String tariffSet,
+                                                @Valid @NewPrice @RequestBody PriceDto newPrice) {
         if (newPrice.getId() != null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Use PATCH method for update");
         }
-        PriceDto createdPrice = priceService.doCreate(newPrice);
+        PriceDto createdPrice = priceService.doCreate(tariffSet, newPrice);
+        String location = "/prices/" + createdPrice.getId();
+        if (!DEFAULT_TARIFF_SET.equals(tariffSet)) {
+            location += "?" + TARIFF_SET + "=" + tariffSet;
+        }
         return ResponseEntity
-                .created(new URI("/prices/" + createdPrice.getId()))
+                .created(new URI(location))
                 .body(createdPrice);
     }
 
+    /**
+     * Handles PUT requests and replaces existing prices with a new schedule at once.
+     * With request parameter <code>effective-from</code> only the tariff version
+     * effective from that date is replaced, otherwise all prices are.
+     *
+     * @param tariffSet     name of the tariff set
+     * @param effectiveFrom beginning of the replaced tariff version
+     * @param newPrices     valid prices of the whole schedule
+     * @return created prices
+     * @throws PriceException if the schedule cannot be created
+     */
+    @PutMapping
+    public List<PriceDto> replacePrices(@TariffSetName
+                                        @RequestParam(name = TARIFF_SET, defaultValue = DEFAULT_TARIFF_SET)
+                                                String tariffSet,
+                                        @DateTimeFormat(pattern = "yyyyMMdd'T'HHmm")
+                                        @RequestParam(name = "effective-from", required = false)
+                                                LocalDateTime effectiveFrom,
+                                        @RequestBody List<@NotNull @Valid @NewPrice PriceDto> newPrices) {
+        if (newPrices.stream().anyMatch(price -> price.getId() != null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ids are assigned to replacing prices");
+        }
+        return priceService.doReplaceAll(tariffSet, newPrices, effectiveFrom);
+    }
+
     /**
      * Handles PATCH requests and updates prices.
      *
-     * @param id       id of an existing price
-     * @param priceDto valid body of the request
+     * @param tariffSet name of the tariff set
+     * @param id        id of an existing price
+     * @param priceDto  valid body of the request
      * @return updated price
      * @throws NoSuchPriceException if the price cannot be found
      * @throws PriceException       if the price cannot be updated
      */
     @PatchMapping("/{id}")
-    public ResponseEntity<PriceDto> updatePrice(@PathVariable Integer id, @Valid @RequestBody PriceDto priceDto) {
+    public ResponseEntity<PriceDto> updatePrice(@TariffSetName
+                                                @RequestParam(name = TARIFF_SET, defaultValue = DEFAULT_TARIFF_SET)
+                                                        String tariffSet,
+                                                @PathVariable Integer id, @Valid @RequestBody PriceDto priceDto) {
         priceDto.setId(id);
-        return ResponseEntity.ok(priceService.doUpdate(priceDto));
+        return ResponseEntity.ok(priceService.doUpdate(tariffSet, priceDto));
     }
 
     /**
      * Handles DELETE requests and deletes prices.
      *
-     * @param id price id
+     * @param id        price id
+     * @param tariffSet name of the tariff set
      */
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void delete(@PathVariable Integer id) {
-        priceService.doDelete(id);
+    public void delete(@PathVariable Integer id,
+                       @TariffSetName @RequestParam(name = TARIFF_SET, defaultValue = DEFAULT_TARIFF_SET)
+                               String tariffSet) {
+        priceService.doDelete(tariffSet, id);
     }
 
     /**
-     * Handles {@link ConstraintViolationException} and maps it to http status 400 instead of default 500.
+     * Handles {@link TaskRejectedException} thrown by the saturated calculation executor
+     * and maps it to http status 503 instead of default 500.
      */
-    @ExceptionHandler(ConstraintViolationException.class)
-    public ResponseEntity<Map<String, String>> handleConstraintViolation(ConstraintViolationException exception) {
-        String violations = exception.getConstraintViolations().stream()
-                .map(ConstraintViolation::getMessage)
-                .collect(Collectors.joining(", "));
-        return ResponseEntity.badRequest()
-                .body(Collections.singletonMap("message", violations));
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleTaskRejected() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Collections.singletonMap("message", "Too many calculations in progress"));
     }
 }
@@ -0,0 +1,92 @@
+package com.vattenfall.ecar.controller;
+
+import com.vattenfall.ecar.dto.ChargingWindowDto;
+import com.vattenfall.ecar.dto.PriceCurveDto;
+import com.vattenfall.ecar.service.QuoteService;
+import com.vattenfall.ecar.validation.TariffSetName;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+
+import static com.vattenfall.ecar.model.Price.DEFAULT_TARIFF_SET;
+import static java.time.temporal.ChronoUnit.MINUTES;
+
+/**
+ * Controller answering questions about future charging processes.
+ * Only GET method is supported. All requests accept request parameter <code>tariff-set</code>
+ * selecting the set of prices, by default the <code>default</code> one is used.
+ */
+@RestController
+@RequestMapping("/quotes")
+@Validated
+public class QuoteController {
+
+    private static final String TARIFF_SET = "tariff-set";
+
+    /**
+     * Longest time frame which can be searched at once, i.e. 31 days.
+     */
+    static final long MAX_TIME_FRAME_MINUTES = 31 * 24 * 60;
+
+    private QuoteService quoteService;
+
+    public QuoteController(QuoteService quoteService) {
+        this.quoteService = quoteService;
+    }
+
+    /**
+     * Handles GET method with request parameters <code>duration</code> in minutes,
+     * <code>earliest-start</code>, <code>deadline</code> and optional <code>customer-id</code>.
+     *
+     * @return the cheapest charging process of the given duration within the time frame
+     */
+    @GetMapping("/cheapest-window")
+    public ChargingWindowDto findCheapestWindow(@TariffSetName
+                                                @RequestParam(name = TARIFF_SET, defaultValue = DEFAULT_TARIFF_SET)
+                                                        String tariffSet,
+                                                @RequestParam(name = "customer-id", required = false) Long customerId,
+                                                @RequestParam("duration") int duration,
+                                                @DateTimeFormat(pattern = "yyyyMMdd'T'HHmm")
+                                                @RequestParam("earliest-start") LocalDateTime earliestStart,
+                                                @DateTimeFormat(pattern = "yyyyMMdd'T'HHmm")
+                                                @RequestParam("deadline") LocalDateTime deadline) {
+        if (duration < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Duration has to be positive");
+        }
+        long timeFrame = MINUTES.between(earliestStart, deadline);
+        if (timeFrame < duration) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Charging does not fit before the deadline");
+        }
+        if (timeFrame > MAX_TIME_FRAME_MINUTES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Time frame cannot be longer than 31 days");
+        }
+        return quoteService.findCheapestWindow(tariffSet, customerId, duration, earliestStart, deadline);
+    }
+
+    /**
+     * Handles GET method with request parameters <code>duration</code> in minutes, optional <code>customer-id</code>
+     * and optional <code>at</code>, which selects the tariff version and defaults to the current time.
+     *
+     * @return total prices of charging processes of the given duration starting at every minute of the day
+     */
+    @GetMapping("/price-curve")
+    public PriceCurveDto findPriceCurve(@TariffSetName
+                                        @RequestParam(name = TARIFF_SET, defaultValue = DEFAULT_TARIFF_SET)
+                                                String tariffSet,
+                                        @RequestParam(name = "customer-id", required = false) Long customerId,
+                                        @RequestParam("duration") int duration,
+                                        @DateTimeFormat(pattern = "yyyyMMdd'T'HHmm")
+                                        @RequestParam(name = "at", required = false) LocalDateTime at) {
+        if (duration < 1 || duration > MAX_TIME_FRAME_MINUTES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Duration has to be between 1 and 44640");
+        }
+        return quoteService.findPriceCurve(tariffSet, customerId, duration, at == null ? LocalDateTime.now() : at);
+    }
+}
@@ -0,0 +1,25 @@
+package com.vattenfall.ecar.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a single charging process in a batch calculation request.
+ */
+@Getter
+@Setter
+public class CalculationRequestDto {
+
+    private Long customerId;
+
+    @JsonFormat(pattern = "yyyyMMdd'T'HHmm")
+    private LocalDateTime start;
+
+    @JsonFormat(pattern = "yyyyMMdd'T'HHmm")
+    private LocalDateTime end;
+
+    private String tariffSet;
+}
@@ -0,0 +1,30 @@
+package com.vattenfall.ecar.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents the outcome of a single charging process in a batch calculation.
+ * Exactly one of the fields <code>total</code> and <code>error</code> is present.
+ */
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CalculationResultDto {
+
+    private Long customerId;
+
+    @JsonFormat(pattern = "yyyyMMdd'T'HHmm")
+    private LocalDateTime start;
+
+    @JsonFormat(pattern = "yyyyMMdd'T'HHmm")
+    private LocalDateTime end;
+
+    private Double total;
+
+    private String error;
+}
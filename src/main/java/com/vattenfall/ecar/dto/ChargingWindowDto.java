@@ -0,0 +1,23 @@
+package com.vattenfall.ecar.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents the cheapest charging process found within the requested time frame.
+ */
+@Getter
+@Setter
+public class ChargingWindowDto {
+
+    @JsonFormat(pattern = "yyyyMMdd'T'HHmm")
+    private LocalDateTime start;
+
+    @JsonFormat(pattern = "yyyyMMdd'T'HHmm")
+    private LocalDateTime end;
+
+    private Double total;
+}
@@ -3,6 +3,10 @@ package com.vattenfall.ecar.dto;
 import com.vattenfall.ecar.model.Price;
 import com.vattenfall.ecar.model.RateType;
 
+import java.time.DayOfWeek;
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * Maps between {@link PriceDto} and {@link Price}.
  */
@@ -12,9 +16,12 @@ public class Mapper {
         PriceDto priceDto = new PriceDto();
         priceDto.setId(price.getId());
         priceDto.setMinuteRate(price.getMinuteRate());
+        priceDto.setEffectiveFrom(price.getEffectiveFrom());
         if (price.getRateType() == RateType.SPECIAL) {
             priceDto.setStartHour(price.getStartHour());
             priceDto.setEndHour(price.getEndHour());
+            priceDto.setDays(copyOf(price.getDays()));
+            priceDto.setDate(price.getDate());
         }
         return priceDto;
     }
@@ -25,10 +32,17 @@ public class Mapper {
         price.setMinuteRate(priceDto.getMinuteRate());
         price.setStartHour(priceDto.getStartHour());
         price.setEndHour(priceDto.getEndHour());
+        price.setDays(copyOf(priceDto.getDays()));
+        price.setDate(priceDto.getDate());
         price.setRateType(determineRateType(priceDto));
+        price.setEffectiveFrom(priceDto.getEffectiveFrom());
         return price;
     }
 
+    private static Set<DayOfWeek> copyOf(Set<DayOfWeek> days) {
+        return days == null || days.isEmpty() ? days : EnumSet.copyOf(days);
+    }
+
     private RateType determineRateType(PriceDto priceDto) {
         if (priceDto.getStartHour() == null && priceDto.getEndHour() == null) {
             return RateType.BASIC;
@@ -0,0 +1,20 @@
+package com.vattenfall.ecar.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Represents total prices of charging processes of the same duration starting at every minute of the day.
+ * The total at index <code>i</code> is the price of a process starting <code>i</code> minutes after midnight,
+ * it is null if the process cannot be priced.
+ */
+@Getter
+@Setter
+public class PriceCurveDto {
+
+    private Integer duration;
+
+    private List<Double> totals;
+}
@@ -6,7 +6,11 @@ import lombok.Getter;
 import lombok.Setter;
 
 import javax.validation.constraints.DecimalMin;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Set;
 
 /**
  * Represents a transfer object for price creation/update.
@@ -26,4 +30,12 @@ public class PriceDto {
 
     @JsonFormat(pattern = "HH:mm")
     private LocalTime endHour;
+
+    private Set<DayOfWeek> days;
+
+    @JsonFormat(pattern = "yyyyMMdd")
+    private LocalDate date;
+
+    @JsonFormat(pattern = "yyyyMMdd'T'HHmm")
+    private LocalDateTime effectiveFrom;
 }
@@ -0,0 +1,22 @@
+package com.vattenfall.ecar.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Represents a page of prices ordered by their ids.
+ */
+@Getter
+@Setter
+public class PricePageDto {
+
+    private List<PriceDto> prices;
+
+    private int page;
+
+    private int size;
+
+    private int total;
+}
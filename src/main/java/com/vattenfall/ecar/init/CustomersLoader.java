@@ -1,60 +1,151 @@
 package com.vattenfall.ecar.init;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.vattenfall.ecar.model.Customer;
-import com.vattenfall.ecar.repository.CustomerRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.vattenfall.ecar.service.CustomerIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.SneakyThrows;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
-import java.util.Collection;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Runs at server startup and loads customers from json file whose
  * location is specified in the property <code>customers</code>.
  * In case of specifying an invalid location, the server fails to start.
  * If no location is present, invocation of {@link #run(String...)}
- * is skipped and the server continues initialization.
+ * is skipped and the server continues initialization. The loader runs before other runners.
+ *
+ * <p>The file is read token by token and customers are merged in JDBC batches
+ * of the size specified in the property <code>customers.batch-size</code>,
+ * so memory usage does not depend on the size of the file. Customers are merged by their ids,
+ * so a customer repeated in the file or already present in database is overwritten
+ * and the load can be repeated against a populated database. Duration of the load is published
+ * as <code>ecar.customers.load</code> timer.</p>
  */
 @Component
 @ConditionalOnProperty("customers")
+@Order(CustomersLoader.ORDER)
 public class CustomersLoader implements CommandLineRunner {
 
+    /**
+     * Order of the loader among runners, the ones using customers have to run after it.
+     */
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+    private static final String MERGE = "merge into customer (id, vip) key (id) values (?, ?)";
+
     private final Logger logger = LoggerFactory.getLogger(CustomersLoader.class);
 
     @Value("${customers}")
     private String fileLocation;
 
-    private CustomerRepository customerRepository;
+    @Value("${customers.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${customers.progress-interval:100000}")
+    private int progressInterval;
+
+    private JdbcTemplate jdbcTemplate;
+    private CustomerIndex customerIndex;
+    private Timer loadTimer;
 
     /**
-     * @param customerRepository autowired by Spring on bean creation
+     * @param jdbcTemplate  autowired by Spring on bean creation
+     * @param customerIndex autowired by Spring on bean creation
+     * @param meterRegistry autowired by Spring on bean creation
      */
-    public CustomersLoader(CustomerRepository customerRepository) {
-        this.customerRepository = customerRepository;
+    public CustomersLoader(JdbcTemplate jdbcTemplate, CustomerIndex customerIndex, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerIndex = customerIndex;
+        this.loadTimer = Timer.builder("ecar.customers.load")
+                .description("Loading of customers on startup")
+                .register(meterRegistry);
     }
 
     /**
-     * Loads sample customers to database.
+     * Loads sample customers to database and to the customer index.
      *
      * @param args main method arguments
      */
     @Override
     @SneakyThrows
     public void run(String... args) {
-        File file = new FileSystemResourceLoader().getResource(fileLocation).getFile();
-        Collection<Customer> customers = new ObjectMapper().readValue(file, new Customers());
-        customerRepository.saveAll(customers);
-        logger.info("{} customers loaded", customers.size());
+        long startTime = System.nanoTime();
+        long count = 0;
+        try (InputStream input = new FileSystemResourceLoader().getResource(fileLocation).getInputStream();
+             JsonParser parser = new JsonFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Array of customers expected in " + fileLocation);
+            }
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                batch.add(readCustomer(parser));
+                if (batch.size() == batchSize) {
+                    count += merge(batch);
+                    reportProgress(count, startTime);
+                }
+            }
+            count += merge(batch);
+        }
+        long nanos = System.nanoTime() - startTime;
+        loadTimer.record(nanos, TimeUnit.NANOSECONDS);
+        long millis = Math.max(1, nanos / 1_000_000);
+        logger.info("{} customers loaded in {} ms ({} customers/s)", count, millis, count * 1000 / millis);
+    }
+
+    private Object[] readCustomer(JsonParser parser) throws IOException {
+        Long id = null;
+        Boolean vip = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("id".equals(field)) {
+                id = parser.getLongValue();
+            } else if ("vip".equals(field)) {
+                vip = value == JsonToken.VALUE_NULL ? null : value == JsonToken.VALUE_TRUE;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (id == null) {
+            throw new IOException("Customer without id in " + fileLocation + " at " + parser.getCurrentLocation());
+        }
+        return new Object[]{id, vip};
+    }
+
+    private int merge(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(MERGE, batch);
+        for (Object[] customer : batch) {
+            customerIndex.put((Long) customer[0], Boolean.TRUE.equals(customer[1]));
+        }
+        int size = batch.size();
+        batch.clear();
+        return size;
     }
 
-    private class Customers extends TypeReference<Collection<Customer>> {
+    private void reportProgress(long count, long startTime) {
+        if (count % progressInterval < batchSize) {
+            long millis = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+            logger.info("{} customers loaded so far ({} customers/s)", count, count * 1000 / millis);
+        }
     }
 }
@@ -0,0 +1,40 @@
+package com.vattenfall.ecar.model;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.time.DayOfWeek;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Stores a set of days of the week as a bit mask, where Monday is the lowest bit.
+ */
+@Converter
+public class DaysOfWeekConverter implements AttributeConverter<Set<DayOfWeek>, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(Set<DayOfWeek> days) {
+        if (days == null) {
+            return null;
+        }
+        int mask = 0;
+        for (DayOfWeek day : days) {
+            mask |= 1 << day.ordinal();
+        }
+        return mask;
+    }
+
+    @Override
+    public Set<DayOfWeek> convertToEntityAttribute(Integer mask) {
+        if (mask == null) {
+            return null;
+        }
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if ((mask & 1 << day.ordinal()) != 0) {
+                days.add(day);
+            }
+        }
+        return days;
+    }
+}
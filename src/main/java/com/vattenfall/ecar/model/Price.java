@@ -7,15 +7,25 @@ import lombok.Setter;
 import javax.persistence.*;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Set;
 
 @Entity
+@Table(indexes = @Index(columnList = "tariffSet"))
 @Getter
 @Setter
 @EqualsAndHashCode(of = "id")
 public class Price {
 
+    /**
+     * Set of prices used when no other set is specified.
+     */
+    public static final String DEFAULT_TARIFF_SET = "default";
+
     @Id
     @GeneratedValue
     private Integer id;
@@ -32,12 +42,41 @@ public class Price {
     @Enumerated(EnumType.STRING)
     private RateType rateType;
 
+    /**
+     * Days of the week a special price applies on, null for every day.
+     */
+    @Convert(converter = DaysOfWeekConverter.class)
+    private Set<DayOfWeek> days;
+
+    /**
+     * Date a special price applies on, e.g. a holiday, null for a weekly price.
+     * Special prices of a date replace all weekly special prices on that date.
+     */
+    @Column(name = "override_date")
+    private LocalDate date;
+
+    /**
+     * Beginning of the tariff version the price belongs to, null for the base version.
+     */
+    private LocalDateTime effectiveFrom;
+
+    /**
+     * Name of the set of prices, e.g. of a charging station or a region, the price belongs to.
+     * Prices of different sets do not affect each other.
+     */
+    @NotNull
+    private String tariffSet = DEFAULT_TARIFF_SET;
+
     @Override
     public String toString() {
         if (rateType == RateType.SPECIAL) {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
-            return String.format("Rate: %s, start hour: %s, end hour: %s",
+            String period = String.format("Rate: %s, start hour: %s, end hour: %s",
                     minuteRate, formatter.format(startHour), formatter.format(endHour));
+            if (days != null) {
+                return period + ", days: " + days;
+            }
+            return date == null ? period : period + ", date: " + date;
         } else {
             return "Basic price with rate: " + minuteRate;
         }
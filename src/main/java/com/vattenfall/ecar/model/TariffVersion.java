@@ -0,0 +1,26 @@
+package com.vattenfall.ecar.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Counter incremented on every modification of prices of a tariff set. It is shared by all
+ * application instances using the same database, so they can detect modifications made
+ * by the other ones.
+ */
+@Entity
+@Getter
+@Setter
+@EqualsAndHashCode(of = "tariffSet")
+public class TariffVersion {
+
+    @Id
+    private String tariffSet;
+
+    private Long version;
+
+}
@@ -3,10 +3,22 @@ package com.vattenfall.ecar.repository;
 import com.vattenfall.ecar.model.Price;
 import org.springframework.data.repository.CrudRepository;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.Optional;
 
 public interface PriceRepository extends CrudRepository<Price, Integer> {
 
     Collection<Price> findAll();
 
+    Collection<Price> findByTariffSet(String tariffSet);
+
+    Optional<Price> findByIdAndTariffSet(Integer id, String tariffSet);
+
+    void deleteByIdAndTariffSet(Integer id, String tariffSet);
+
+    void deleteByTariffSet(String tariffSet);
+
+    void deleteByTariffSetAndEffectiveFrom(String tariffSet, LocalDateTime effectiveFrom);
+
 }
@@ -0,0 +1,23 @@
+package com.vattenfall.ecar.repository;
+
+import com.vattenfall.ecar.model.TariffVersion;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+
+public interface TariffVersionRepository extends CrudRepository<TariffVersion, String> {
+
+    Collection<TariffVersion> findAll();
+
+    @Modifying
+    @Query("update TariffVersion v set v.version = v.version + 1 where v.tariffSet = :tariffSet")
+    int increment(@Param("tariffSet") String tariffSet);
+
+    @Modifying
+    @Query(value = "insert into tariff_version (tariff_set, version) values (:tariffSet, 0)", nativeQuery = true)
+    int create(@Param("tariffSet") String tariffSet);
+
+}
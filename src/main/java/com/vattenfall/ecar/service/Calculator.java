@@ -1,98 +1,239 @@
 package com.vattenfall.ecar.service;
 
+import com.vattenfall.ecar.dto.CalculationRequestDto;
+import com.vattenfall.ecar.dto.CalculationResultDto;
 import com.vattenfall.ecar.exception.NoSuchCustomerException;
 import com.vattenfall.ecar.exception.NotEnoughDataException;
-import com.vattenfall.ecar.model.Customer;
 import com.vattenfall.ecar.model.Price;
-import com.vattenfall.ecar.model.RateType;
-import com.vattenfall.ecar.repository.CustomerRepository;
-import com.vattenfall.ecar.service.Intervals.DateTimeInterval;
-import com.vattenfall.ecar.service.Intervals.TimeInterval;
+import com.vattenfall.ecar.validation.TariffSetName;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
-import static com.vattenfall.ecar.service.Intervals.intersectionInMinutes;
+import static java.time.temporal.ChronoUnit.MINUTES;
 
 /**
  * Service which is responsible for calculating prices of customer's charging process.
+ *
+ * <p>Latency of single calculations is published as <code>ecar.calculation</code> timer
+ * with median and 99th percentile, processes rejected due to missing prices are counted
+ * by <code>ecar.rejections</code> counter.</p>
+ *
+ * <p>Totals are cached in the <code>results</code> cache if it is configured. The cost of a charging
+ * process within a single tariff version depends only on its start minute of the day, or of the week
+ * if the version has prices of some days only, and duration, so these, together with the vip status,
+ * the serial number of the snapshot and the tariff version, form the key. Processes spanning many
+ * tariff versions or crossing dates with their own prices are not cached. Serial numbers are unique
+ * among snapshots of all tariff sets, so results of a replaced snapshot are never read again and are
+ * evicted by the size bound of the cache, while results of other tariff sets stay cached.</p>
  */
 @Service
 public class Calculator {
 
+    private static final String RESULTS_CACHE = "results";
+    private static final Pattern TARIFF_SET_NAME = Pattern.compile(TariffSetName.PATTERN);
+
     private PriceService priceService;
-    private CustomerRepository customerRepository;
-    private double vipDiscount;
+    private CustomerIndex customerIndex;
+    private Timer calculationTimer;
+    private Timer batchTimer;
+    private Counter notEnoughDataCounter;
+    private Cache results;
+    private long vipFactor = Money.MICROS_PER_UNIT;
+    private RoundingMode roundingMode = RoundingMode.HALF_UP;
 
-    public Calculator(PriceService priceService, CustomerRepository customerRepository) {
+    public Calculator(PriceService priceService, CustomerIndex customerIndex, MeterRegistry meterRegistry,
+                      CacheManager cacheManager) {
         this.priceService = priceService;
-        this.customerRepository = customerRepository;
+        this.customerIndex = customerIndex;
+        this.results = cacheManager.getCache(RESULTS_CACHE);
+        this.calculationTimer = Timer.builder("ecar.calculation")
+                .description("Calculation of a single charging process")
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("ecar.calculation.batch")
+                .description("Calculation of many charging processes at once")
+                .register(meterRegistry);
+        this.notEnoughDataCounter = Counter.builder("ecar.rejections")
+                .description("Rejected requests")
+                .tag("exception", NotEnoughDataException.class.getSimpleName())
+                .register(meterRegistry);
     }
 
     @Autowired
     @SneakyThrows
     public void setVipDiscount(@Value("${vip.discount}") String vipDiscount) {
-        this.vipDiscount = new DecimalFormat("0.0#%").parse(vipDiscount).doubleValue();
+        DecimalFormat format = new DecimalFormat("0.0#%");
+        format.setParseBigDecimal(true);
+        BigDecimal discount = (BigDecimal) format.parse(vipDiscount);
+        this.vipFactor = BigDecimal.ONE.subtract(discount).movePointRight(6).longValueExact();
+    }
+
+    @Autowired
+    public void setRoundingMode(@Value("${rounding.mode:HALF_UP}") RoundingMode roundingMode) {
+        this.roundingMode = roundingMode;
     }
 
     /**
-     * Calculates the total cost of customer's charging process.
+     * Calculates the total cost of customer's charging process with prices of the tariff set.
+     * Parts of the process are charged with tariff versions effective at their time.
      * Lowers the price for vip customers.
      *
+     * @param tariffSet  name of the tariff set
      * @param customerId customer id
      * @param start      start time of charging process
      * @param end        end time of charging process
-     * @return total cost rounded to two decimal places
+     * @return total cost rounded to two decimal places with the configured rounding mode
      * @throws NoSuchCustomerException if there is no customer with the passed id
      * @throws NotEnoughDataException  if there are not enough prices defined to calculate the total cost
      */
-    public Double calculate(Long customerId, LocalDateTime start, LocalDateTime end) {
-        Customer customer = customerRepository.findById(customerId)
-                .orElseThrow(() -> new NoSuchCustomerException(customerId));
-        DateTimeInterval chargingInterval = new DateTimeInterval(start, end);
-        long chargingTime = ChronoUnit.MINUTES.between(start, end);
-        long totalTime = getTimeInSpecialPeriods(chargingInterval);
-        double totalPrice = getPriceInSpecialPeriods(chargingInterval);
-        if (totalTime < chargingTime) {
-            totalPrice += (chargingTime - totalTime) * getBasicRate();
+    public Double calculate(String tariffSet, Long customerId, LocalDateTime start, LocalDateTime end) {
+        long startTime = System.nanoTime();
+        try {
+            Boolean vip = customerIndex.findVip(customerId);
+            if (vip == null) {
+                throw new NoSuchCustomerException(customerId);
+            }
+            return calculate(vip, priceService.getSnapshot(tariffSet), start, end);
+        } catch (NotEnoughDataException e) {
+            notEnoughDataCounter.increment();
+            throw e;
+        } finally {
+            calculationTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Calculates the total costs of many charging processes at once. Customers missing
+     * in the index are read in bulk and all processes of the same tariff set are priced against the same snapshot,
+     * processes without a tariff set are priced with the default one. A process which cannot
+     * be priced, including a missing one or one of an invalid tariff set, gets an error message instead
+     * of the total and does not affect the others.
+     *
+     * @param requests charging processes
+     * @return results in the order of the passed processes
+     */
+    public List<CalculationResultDto> calculateAll(List<CalculationRequestDto> requests) {
+        return batchTimer.record(() -> doCalculateAll(requests));
+    }
+
+    private List<CalculationResultDto> doCalculateAll(List<CalculationRequestDto> requests) {
+        Map<String, TariffSnapshot> snapshots = new HashMap<>();
+        customerIndex.load(requests.stream()
+                .filter(Objects::nonNull)
+                .map(CalculationRequestDto::getCustomerId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        return requests.stream()
+                .map(request -> request == null ? missingRequest() : calculate(request, snapshots))
+                .collect(Collectors.toList());
+    }
+
+    private CalculationResultDto missingRequest() {
+        CalculationResultDto result = new CalculationResultDto();
+        result.setError("Charging process is required");
+        return result;
+    }
+
+    private CalculationResultDto calculate(CalculationRequestDto request, Map<String, TariffSnapshot> snapshots) {
+        CalculationResultDto result = new CalculationResultDto();
+        result.setCustomerId(request.getCustomerId());
+        result.setStart(request.getStart());
+        result.setEnd(request.getEnd());
+        String tariffSet = request.getTariffSet() == null ? Price.DEFAULT_TARIFF_SET : request.getTariffSet();
+        Boolean vip = request.getCustomerId() == null ? null : customerIndex.getVip(request.getCustomerId());
+        if (request.getCustomerId() == null || request.getStart() == null || request.getEnd() == null) {
+            result.setError("Customer id, start and end are required");
+        } else if (!TARIFF_SET_NAME.matcher(tariffSet).matches()) {
+            result.setError("Invalid tariff set name");
+        } else if (request.getStart().isAfter(request.getEnd())) {
+            result.setError("Start date has to be before end date");
+        } else if (vip == null) {
+            result.setError(new NoSuchCustomerException(request.getCustomerId()).getMessage());
+        } else {
+            try {
+                TariffSnapshot snapshot = snapshots.computeIfAbsent(tariffSet, priceService::getSnapshot);
+                result.setTotal(calculate(vip, snapshot, request.getStart(), request.getEnd()));
+            } catch (NotEnoughDataException e) {
+                notEnoughDataCounter.increment();
+                result.setError(e.getMessage());
+            }
         }
-        double discountedPrice = customer.getVip() ? (1 - vipDiscount) * totalPrice : totalPrice;
-        return round(discountedPrice);
+        return result;
     }
 
-    private long getTimeInSpecialPeriods(DateTimeInterval interval) {
-        return priceService.findAll().stream()
-                .filter(price -> price.getRateType() == RateType.SPECIAL)
-                .map(price -> new TimeInterval(price.getStartHour(), price.getEndHour()))
-                .mapToLong(time -> intersectionInMinutes(interval, time))
-                .sum();
+    private double calculate(boolean vip, TariffSnapshot snapshot, LocalDateTime start, LocalDateTime end) {
+        Tariff tariff = snapshot.getTariff();
+        int tariffVersion = results == null ? -1 : tariff.versionOf(start, end);
+        int startMinute = tariffVersion < 0 ? -1 : tariff.getTable(tariffVersion).periodicMinuteOf(start, end);
+        if (startMinute < 0) {
+            return calculate(vip, tariff, start, end);
+        }
+        ResultKey key = new ResultKey(snapshot.getSerial(), tariffVersion, vip, startMinute,
+                MINUTES.between(start, end));
+        Cache.ValueWrapper cached = results.get(key);
+        if (cached != null) {
+            return (Double) cached.get();
+        }
+        double total = calculate(vip, tariff, start, end);
+        results.put(key, total);
+        return total;
     }
 
-    private double getPriceInSpecialPeriods(DateTimeInterval interval) {
-        return priceService.findAll().stream()
-                .filter(price -> price.getRateType() == RateType.SPECIAL)
-                .mapToDouble(price -> {
-                    TimeInterval timeInterval = new TimeInterval(price.getStartHour(), price.getEndHour());
-                    return intersectionInMinutes(interval, timeInterval) * price.getMinuteRate();
-                }).sum();
+    private double calculate(boolean vip, Tariff tariff, LocalDateTime start, LocalDateTime end) {
+        return toTotal(tariff.costInMicros(start, end), vip);
     }
 
-    private double getBasicRate() {
-        return priceService.findAll().stream()
-                .filter(price -> price.getRateType() == RateType.BASIC)
-                .map(Price::getMinuteRate)
-                .findAny()
-                .orElseThrow(() -> new NotEnoughDataException("Basic price is missing"));
+    /**
+     * Applies the vip discount to the exact cost and rounds it.
+     *
+     * @param costInMicros exact cost in micro-units
+     * @param vip          vip status of the customer
+     * @return total cost rounded to two decimal places with the configured rounding mode
+     */
+    double toTotal(long costInMicros, boolean vip) {
+        return Money.toUnits(toCents(costInMicros, vip));
+    }
+
+    /**
+     * Applies the discount and rounds the result to cents in a single step.
+     */
+    private long toCents(long totalPrice, boolean vip) {
+        if (vip) {
+            return Money.multiplyAndDivide(totalPrice, vipFactor, Money.MICROS_PER_UNIT * Money.MICROS_PER_CENT,
+                    roundingMode);
+        }
+        return Money.divide(totalPrice, Money.MICROS_PER_CENT, roundingMode);
     }
 
-    private double round(double discountedPrice) {
-        return new BigDecimal(discountedPrice).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class ResultKey {
+        private final long snapshotSerial;
+        private final int tariffVersion;
+        private final boolean vip;
+        private final int startMinute;
+        private final long minutes;
     }
 }
@@ -0,0 +1,38 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.config.NamedCacheLoader;
+import com.vattenfall.ecar.repository.CustomerRepository;
+import org.springframework.cache.support.NullValue;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads vip status of customers into the <code>customers</code> cache, which remembers
+ * customers missing in {@link CustomerIndex}, also the ones which do not exist.
+ */
+@Component
+public class CustomerCacheLoader implements NamedCacheLoader {
+
+    static final String CACHE_NAME = "customers";
+
+    private CustomerRepository customerRepository;
+
+    public CustomerCacheLoader(CustomerRepository customerRepository) {
+        this.customerRepository = customerRepository;
+    }
+
+    @Override
+    public String getCacheName() {
+        return CACHE_NAME;
+    }
+
+    /**
+     * @param id customer id
+     * @return vip status or {@link NullValue#INSTANCE} if there is no customer with the passed id
+     */
+    @Override
+    public Object load(Object id) {
+        return customerRepository.findById((Long) id)
+                .<Object>map(customer -> Boolean.TRUE.equals(customer.getVip()))
+                .orElse(NullValue.INSTANCE);
+    }
+}
@@ -0,0 +1,200 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.model.Customer;
+import com.vattenfall.ecar.repository.CustomerRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCache;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
+
+/**
+ * <p>In-memory index of customers' vip status. Customers are kept in an open-addressing
+ * hash table with primitive keys, so a lookup costs a few array reads and does not need
+ * a database connection. Readers do not block each other nor writers.</p>
+ *
+ * <p>The index is read-through: customers missing in the index are read from database
+ * and added to it. It is populated on startup by the customers loader, which is the only writer
+ * of customers, so entries are never removed. Reads of missing customers go through the <code>customers</code> cache,
+ * so ids of customers which do not exist are remembered too and do not hit database
+ * on every request until their entries are refreshed or expire.</p>
+ */
+@Component
+public class CustomerIndex {
+
+    private static final byte EMPTY = 0;
+    private static final byte REGULAR = 1;
+    private static final byte VIP = 2;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StampedLock lock = new StampedLock();
+    private CustomerRepository customerRepository;
+    private Cache customers;
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    public CustomerIndex(CustomerRepository customerRepository, CacheManager cacheManager) {
+        this.customerRepository = customerRepository;
+        Cache cache = cacheManager.getCache(CustomerCacheLoader.CACHE_NAME);
+        this.customers = cache != null ? cache : new NoOpCache(CustomerCacheLoader.CACHE_NAME);
+    }
+
+    /**
+     * Returns vip status of the customer reading it from database if the customer is not indexed.
+     *
+     * @param id customer id
+     * @return vip status or null if there is no customer with the passed id
+     */
+    public Boolean findVip(long id) {
+        Boolean vip = getVip(id);
+        if (vip != null) {
+            return vip;
+        }
+        vip = customers.get(id, () -> customerRepository.findById(id)
+                .map(CustomerIndex::isVip)
+                .orElse(null));
+        if (vip != null) {
+            put(id, vip);
+        }
+        return vip;
+    }
+
+    /**
+     * Reads in bulk customers which are not indexed yet.
+     *
+     * @param ids customer ids
+     */
+    public void load(Collection<Long> ids) {
+        List<Long> missing = ids.stream()
+                .filter(id -> getVip(id) == null)
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            customerRepository.findAllById(missing).forEach(this::put);
+            missing.stream()
+                    .filter(id -> getVip(id) == null)
+                    .forEach(id -> customers.put(id, null));
+        }
+    }
+
+    /**
+     * Returns vip status of the customer without accessing database.
+     *
+     * @param id customer id
+     * @return vip status or null if the customer is not indexed
+     */
+    public Boolean getVip(long id) {
+        long stamp = lock.tryOptimisticRead();
+        byte state = table.get(id);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                state = table.get(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return state == EMPTY ? null : state == VIP;
+    }
+
+    /**
+     * Adds the customer to the index or updates its vip status.
+     *
+     * @param customer customer
+     */
+    public void put(Customer customer) {
+        put(customer.getId(), isVip(customer));
+        customers.evict(customer.getId());
+    }
+
+    /**
+     * Adds the customer to the index or updates its vip status.
+     *
+     * @param id  customer id
+     * @param vip vip status
+     */
+    public void put(long id, boolean vip) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            if (current.put(id, vip ? VIP : REGULAR) && current.isFull()) {
+                table = current.resize();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return number of indexed customers
+     */
+    public int size() {
+        return table.size;
+    }
+
+    private static boolean isVip(Customer customer) {
+        return Boolean.TRUE.equals(customer.getVip());
+    }
+
+    /**
+     * Hash table with linear probing, its load factor never exceeds one half.
+     */
+    private static class Table {
+        private final long[] keys;
+        private final byte[] states;
+        private final int mask;
+        private int size;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            states = new byte[capacity];
+            mask = capacity - 1;
+        }
+
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private byte get(long key) {
+            for (int i = slot(key); ; i = (i + 1) & mask) {
+                if (states[i] == EMPTY || keys[i] == key) {
+                    return states[i];
+                }
+            }
+        }
+
+        /**
+         * @return true if a new key has been added
+         */
+        private boolean put(long key, byte state) {
+            int i = slot(key);
+            while (states[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            boolean added = states[i] == EMPTY;
+            keys[i] = key;
+            states[i] = state;
+            if (added) {
+                size++;
+            }
+            return added;
+        }
+
+        private boolean isFull() {
+            return 2 * size > keys.length;
+        }
+
+        private Table resize() {
+            Table resized = new Table(2 * keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                if (states[i] != EMPTY) {
+                    resized.put(keys[i], states[i]);
+                }
+            }
+            return resized;
+        }
+    }
+}
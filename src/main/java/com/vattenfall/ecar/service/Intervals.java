@@ -13,6 +13,8 @@ class Intervals {
 
     /**
      * Calculates the number of minutes which {@link DateTimeInterval} and {@link TimeInterval} have in common.
+     * Every full day of the date time interval contributes the whole length of the day time interval,
+     * so only the remaining fragment shorter than a day has to be intersected.
      *
      * @param dateTimeInterval date time interval
      * @param timeInterval     day time interval
@@ -21,13 +23,9 @@ class Intervals {
     static long intersectionInMinutes(DateTimeInterval dateTimeInterval, TimeInterval timeInterval) {
         LocalDateTime startDateTime = dateTimeInterval.start;
         LocalDateTime endDateTime = dateTimeInterval.end;
-        if (DAYS.between(startDateTime, endDateTime) > 0) {
-            DateTimeInterval interval = new DateTimeInterval(startDateTime.plusDays(1), endDateTime);
-            return timeInterval.length() + intersectionInMinutes(interval, timeInterval);
-        } else {
-            TimeInterval interval = new TimeInterval(startDateTime.toLocalTime(), endDateTime.toLocalTime());
-            return intersectionInMinutes(interval, timeInterval);
-        }
+        long days = DAYS.between(startDateTime, endDateTime);
+        TimeInterval rest = new TimeInterval(startDateTime.toLocalTime(), endDateTime.toLocalTime());
+        return days * timeInterval.length() + intersectionInMinutes(rest, timeInterval);
     }
 
     /**
@@ -0,0 +1,110 @@
+package com.vattenfall.ecar.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * <p>Utility class for fixed-point money arithmetic. Rates and costs are represented
+ * as long numbers of micro-units, i.e. millionths of the currency unit, so sums are exact
+ * and do not allocate. Rounding to cents happens in a single step.</p>
+ */
+final class Money {
+
+    static final long MICROS_PER_UNIT = 1_000_000L;
+    static final long MICROS_PER_CENT = 10_000L;
+
+    private Money() {
+    }
+
+    /**
+     * Converts the passed amount to micro-units.
+     *
+     * @param amount amount with at most six decimal places, otherwise it is rounded half up
+     * @return amount in micro-units
+     */
+    static long toMicros(double amount) {
+        return BigDecimal.valueOf(amount).movePointRight(6).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Converts the passed amount in cents to the currency unit.
+     *
+     * @param cents amount in cents
+     * @return amount in the currency unit
+     */
+    static double toUnits(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Calculates <code>value * factor / divisor</code> with a single rounding step.
+     * Falls back to {@link BigDecimal} only if the product does not fit in a long.
+     *
+     * @param value   multiplicand
+     * @param factor  multiplier
+     * @param divisor positive divisor
+     * @param mode    rounding mode applied to the quotient
+     * @return rounded quotient
+     */
+    static long multiplyAndDivide(long value, long factor, long divisor, RoundingMode mode) {
+        long product;
+        try {
+            product = Math.multiplyExact(value, factor);
+        } catch (ArithmeticException e) {
+            return BigDecimal.valueOf(value)
+                    .multiply(BigDecimal.valueOf(factor))
+                    .divide(BigDecimal.valueOf(divisor), 0, mode)
+                    .longValueExact();
+        }
+        return divide(product, divisor, mode);
+    }
+
+    /**
+     * Divides two long numbers and rounds the quotient with the passed rounding mode.
+     *
+     * @param dividend dividend
+     * @param divisor  positive divisor
+     * @param mode     rounding mode applied to the quotient
+     * @return rounded quotient
+     * @throws ArithmeticException if rounding is necessary and the mode is {@link RoundingMode#UNNECESSARY}
+     */
+    static long divide(long dividend, long divisor, RoundingMode mode) {
+        long quotient = Math.floorDiv(dividend, divisor);
+        long remainder = Math.floorMod(dividend, divisor);
+        if (remainder == 0) {
+            return quotient;
+        }
+        switch (mode) {
+            case FLOOR:
+                return quotient;
+            case CEILING:
+                return quotient + 1;
+            case DOWN:
+                return dividend < 0 ? quotient + 1 : quotient;
+            case UP:
+                return dividend < 0 ? quotient : quotient + 1;
+            case UNNECESSARY:
+                throw new ArithmeticException("Rounding necessary");
+            default:
+                return divideHalf(dividend, divisor, quotient, remainder, mode);
+        }
+    }
+
+    private static long divideHalf(long dividend, long divisor, long quotient, long remainder, RoundingMode mode) {
+        int distance = Long.compare(remainder, divisor - remainder);
+        if (distance < 0) {
+            return quotient;
+        }
+        if (distance > 0) {
+            return quotient + 1;
+        }
+        switch (mode) {
+            case HALF_UP:
+                return dividend < 0 ? quotient : quotient + 1;
+            case HALF_DOWN:
+                return dividend < 0 ? quotient + 1 : quotient;
+            default:
+                return (quotient & 1) == 0 ? quotient : quotient + 1;
+        }
+    }
+}
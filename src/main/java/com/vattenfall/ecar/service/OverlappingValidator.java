@@ -2,10 +2,8 @@ package com.vattenfall.ecar.service;
 
 import com.vattenfall.ecar.exception.PriceException;
 import com.vattenfall.ecar.model.Price;
-import com.vattenfall.ecar.service.Intervals.TimeInterval;
 
 import java.util.Collection;
-import java.util.Objects;
 
 import static com.vattenfall.ecar.model.RateType.BASIC;
 
@@ -17,45 +15,49 @@ class OverlappingValidator {
     /**
      * Validates passed price against the collection of existing prices.
      * Helpful in keeping integrity before creating/updating a price.
+     * The collection is not modified.
      *
      * @param price  price to be validated
      * @param prices existing prices
      * @throws PriceException if the passed price causes violations
      */
     void validate(Price price, Collection<Price> prices) {
-        prices.removeIf(p -> Objects.equals(p.getId(), price.getId()));
-        if (price.getRateType() == BASIC) {
-            validateBasicPrice(prices);
-        } else {
-            validateSpecialPrice(price, prices);
-        }
+        validate(price, PriceIndex.of(prices));
     }
 
-    private void validateBasicPrice(Collection<Price> prices) {
-        if (prices.stream().map(Price::getRateType).anyMatch(type -> type == BASIC)) {
-            throw new PriceException("Two basic prices are not allowed.");
+    /**
+     * Validates passed price against an index of existing prices.
+     * A price with the same id as the passed one is skipped, so it can be used for updates.
+     *
+     * @param price price to be validated
+     * @param index index of existing prices
+     * @throws PriceException if the passed price causes violations
+     */
+    void validate(Price price, PriceIndex index) {
+        Price conflict = index.findConflict(price);
+        if (conflict == null) {
+            return;
         }
-    }
-
-    private void validateSpecialPrice(Price specialPrice, Collection<Price> prices) {
-        prices.removeIf(price -> price.getRateType() == BASIC);
-        for (Price price : prices) {
-            if (overlap(price, specialPrice)) {
-                throw new PriceException("Price causing violations: " + price);
-            }
+        if (price.getRateType() == BASIC) {
+            throw new PriceException("Two basic prices are not allowed.");
         }
+        throw new PriceException("Price causing violations: " + conflict);
     }
 
     /**
-     * Checks if periods of two prices overlap.
+     * Validates a complete set of prices, e.g. a schedule replacing all existing prices.
+     * Periods are sorted once and swept, so the cost is O(n log n).
      *
-     * @param price1 first price
-     * @param price2 second price
-     * @return true if periods of the passed prices overlap
+     * @param prices all prices of the schedule
+     * @throws PriceException if the prices violate integrity
      */
-    boolean overlap(Price price1, Price price2) {
-        TimeInterval interval1 = new TimeInterval(price1.getStartHour(), price1.getEndHour());
-        TimeInterval interval2 = new TimeInterval(price2.getStartHour(), price2.getEndHour());
-        return Intervals.intersectionInMinutes(interval1, interval2) != 0;
+    void validateAll(Collection<Price> prices) {
+        if (prices.stream().filter(price -> price.getRateType() == BASIC).count() > 1) {
+            throw new PriceException("Two basic prices are not allowed.");
+        }
+        Price[] overlap = PriceIndex.of(prices).findOverlap();
+        if (overlap != null) {
+            throw new PriceException("Price causing violations: " + overlap[1]);
+        }
     }
 }
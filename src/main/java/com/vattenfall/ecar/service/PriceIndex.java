@@ -0,0 +1,197 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.model.Price;
+import com.vattenfall.ecar.model.RateType;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * <p>Immutable index of price periods used for overlap detection. Periods of special prices
+ * are placed on timelines as segments sorted by their start minute. Since existing periods
+ * are disjoint, the segments are sorted by their end minute as well, so a conflicting price
+ * is found with a binary search.</p>
+ *
+ * <p>A period containing midnight continues on the next day. Segments of weekly prices are placed
+ * on a cyclic timeline of a single week, once for every day the price applies on, so a period starting
+ * on Sunday continues on Monday. Segments of prices of a date are placed on a separate timeline of dates
+ * and continue on the next date. Thus weekly prices conflict only if they share some minutes of the week
+ * and never conflict with prices of a date, which replace them.</p>
+ */
+class PriceIndex {
+
+    private static final int MINUTES_PER_DAY = TariffTable.MINUTES_PER_DAY;
+    private static final int MINUTES_PER_WEEK = WeekTable.MINUTES_PER_WEEK;
+
+    /**
+     * Beginning of the week timeline, far before the timeline of dates starting at the epoch day.
+     */
+    private static final long WEEK = Long.MIN_VALUE / 2;
+
+    private final Price basicPrice;
+    private final long[] starts;
+    private final long[] ends;
+    private final Price[] owners;
+
+    private PriceIndex(Price basicPrice, List<Segment> segments) {
+        this.basicPrice = basicPrice;
+        this.starts = new long[segments.size()];
+        this.ends = new long[segments.size()];
+        this.owners = new Price[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            starts[i] = segments.get(i).start;
+            ends[i] = segments.get(i).end;
+            owners[i] = segments.get(i).owner;
+        }
+    }
+
+    /**
+     * Creates an index of the passed prices.
+     *
+     * @param prices existing prices
+     * @return new index
+     */
+    static PriceIndex of(Collection<Price> prices) {
+        Price basicPrice = null;
+        List<Segment> segments = new ArrayList<>();
+        for (Price price : prices) {
+            if (price.getRateType() == RateType.BASIC) {
+                basicPrice = price;
+            } else {
+                segments.addAll(split(price));
+            }
+        }
+        segments.sort(Comparator.comparingLong((Segment segment) -> segment.start)
+                .thenComparingLong(segment -> segment.end));
+        return new PriceIndex(basicPrice, segments);
+    }
+
+    /**
+     * Checks if the indexed prices contain a basic price.
+     *
+     * @return true if there is a basic price
+     */
+    boolean hasBasicPrice() {
+        return basicPrice != null;
+    }
+
+    /**
+     * Finds an existing price, other than the passed one, which conflicts with it.
+     *
+     * @param price new or updated price
+     * @return conflicting price or null if there is none
+     */
+    Price findConflict(Price price) {
+        if (price.getRateType() == RateType.BASIC) {
+            return basicPrice != null && !isSame(basicPrice, price) ? basicPrice : null;
+        }
+        if (starts.length == 0) {
+            return null;
+        }
+        for (Segment segment : split(price)) {
+            for (int i = firstEndingAfter(segment.start); i < starts.length && starts[i] < segment.end; i++) {
+                if (!isSame(owners[i], price)) {
+                    return owners[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds two special prices which overlap each other with a single sweep over segments
+     * sorted by their start minute. Unlike {@link #findConflict(Price)} it does not assume
+     * that the indexed periods are disjoint.
+     *
+     * @return a pair of overlapping prices or null if all periods are disjoint
+     */
+    Price[] findOverlap() {
+        long latestEnd = Long.MIN_VALUE;
+        Price latestOwner = null;
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] < latestEnd) {
+                return new Price[]{latestOwner, owners[i]};
+            }
+            if (ends[i] > latestEnd) {
+                latestEnd = ends[i];
+                latestOwner = owners[i];
+            }
+        }
+        return null;
+    }
+
+    private int firstEndingAfter(long minute) {
+        int low = 0;
+        int high = ends.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] <= minute) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isSame(Price price1, Price price2) {
+        return price1.getId() != null && Objects.equals(price1.getId(), price2.getId());
+    }
+
+    /**
+     * Places the period of a special price on the timeline for every day the price applies on. A period
+     * containing midnight continues on the next day, a weekly period continuing after the end of the week
+     * is split into two segments. Equal start and end describe 24 hours, as in {@link Intervals}.
+     */
+    private static List<Segment> split(Price price) {
+        int start = minuteOfDay(price.getStartHour());
+        int end = minuteOfDay(price.getEndHour());
+        int length = start < end ? end - start : MINUTES_PER_DAY - start + end;
+        List<Segment> segments = new ArrayList<>(2);
+        for (long day : daysOf(price)) {
+            long segmentStart = day + start;
+            long segmentEnd = segmentStart + length;
+            if (price.getDate() == null && segmentEnd > WEEK + MINUTES_PER_WEEK) {
+                segments.add(new Segment(segmentStart, WEEK + MINUTES_PER_WEEK, price));
+                segments.add(new Segment(WEEK, segmentEnd - MINUTES_PER_WEEK, price));
+            } else {
+                segments.add(new Segment(segmentStart, segmentEnd, price));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Returns beginnings of days the price applies on, on the timeline of dates or of the week.
+     */
+    private static long[] daysOf(Price price) {
+        if (price.getDate() != null) {
+            return new long[]{price.getDate().toEpochDay() * MINUTES_PER_DAY};
+        }
+        return (price.getDays() == null ? EnumSet.allOf(DayOfWeek.class) : price.getDays()).stream()
+                .mapToLong(day -> WEEK + (long) day.ordinal() * MINUTES_PER_DAY)
+                .toArray();
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static class Segment {
+        private final long start;
+        private final long end;
+        private final Price owner;
+
+        private Segment(long start, long end, Price owner) {
+            this.start = start;
+            this.end = end;
+            this.owner = owner;
+        }
+    }
+}
@@ -2,68 +2,197 @@ package com.vattenfall.ecar.service;
 
 import com.vattenfall.ecar.dto.Mapper;
 import com.vattenfall.ecar.dto.PriceDto;
+import com.vattenfall.ecar.dto.PricePageDto;
 import com.vattenfall.ecar.exception.NoSuchPriceException;
 import com.vattenfall.ecar.exception.PriceException;
 import com.vattenfall.ecar.model.Price;
 import com.vattenfall.ecar.model.RateType;
+import com.vattenfall.ecar.model.TariffVersion;
 import com.vattenfall.ecar.repository.PriceRepository;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import com.vattenfall.ecar.repository.TariffVersionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
 
 /**
  * <p>Service for price management. It allows to define, update and delete prices.
  * It is also used for reading all available prices.</p>
  *
- * <p>Methods in this class are not thread-safe so it is recommended to add some additional
- * database constraint to ensure data integrity. Sample definition of such a constraint
- * for H2 can be found in the validate_time.sql file.</p>
+ * <p>Prices are grouped into independent tariff sets, e.g. of charging stations or regions.
+ * Prices of a set are read from an immutable {@link TariffSnapshot}, which is kept in a concurrent
+ * registry and swapped atomically after every committed modification of the set, so readers never block
+ * and never hit the database. Snapshots are read from database lazily on the first use of their set.
+ * Only sets whose versions exist in database are registered, so the registry is bounded by the database.
+ * Names of these sets are read once and then kept up to date by {@link #refreshIfChanged()} and local
+ * modifications, so reads of other sets do not hit the database either.
+ * New and updated prices are validated against the index kept in the snapshot of their set.</p>
+ *
+ * <p>Modifications of a set are serialized by its own writer lock: each of them is validated against
+ * the current snapshot, committed in its own transaction and followed by a snapshot refresh
+ * before the next one starts. Thus concurrent writers see effects of each other and receive
+ * correct conflict errors, while modifications of different sets do not wait for each other.
+ * Modifications must not be invoked within an outer transaction.</p>
+ *
+ * <p>Every modification starts with incrementing the {@link TariffVersion} of its set shared by all instances
+ * using the same database, which locks the row of the set until commit and serializes modifications
+ * of all instances. If the incremented version shows that the set has been modified by another instance
+ * since the snapshot was taken, the modification is validated against prices read within its transaction
+ * instead. Snapshots are numbered with that version and loaded snapshots are refreshed
+ * by {@link #refreshIfChanged()} whenever their versions are incremented by another instance.</p>
+ *
+ * <p>Reads of snapshots are counted by <code>ecar.tariff.snapshot.requests</code> counter tagged
+ * with <code>hit</code> or <code>miss</code> result, their replacements by <code>ecar.tariff.snapshot.refreshes</code>
+ * counter and rejected modifications by <code>ecar.rejections</code> counter. The number of loaded sets
+ * is published as <code>ecar.tariff.snapshots</code> gauge.</p>
  */
 @Service
 public class PriceService {
 
+    private static final String MISSING_BASIC_PRICE = "Tariff version with an effective date needs a basic price.";
+
     private Mapper mapper = new Mapper();
     private OverlappingValidator validator = new OverlappingValidator();
     private PriceRepository repository;
+    private TariffVersionRepository tariffVersionRepository;
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate newTransactionTemplate;
+    private final ConcurrentMap<String, Lock> writeLocks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TariffSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<String> tariffSets = ConcurrentHashMap.newKeySet();
+    private volatile boolean tariffSetsLoaded;
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter refreshCounter;
+    private Counter priceExceptionCounter;
 
-    public PriceService(PriceRepository repository) {
+    public PriceService(PriceRepository repository, TariffVersionRepository tariffVersionRepository,
+                        PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
         this.repository = repository;
+        this.tariffVersionRepository = tariffVersionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.hitCounter = snapshotRequests(meterRegistry, "hit");
+        this.missCounter = snapshotRequests(meterRegistry, "miss");
+        this.refreshCounter = Counter.builder("ecar.tariff.snapshot.refreshes")
+                .description("Replacements of tariff snapshots")
+                .register(meterRegistry);
+        this.priceExceptionCounter = Counter.builder("ecar.rejections")
+                .description("Rejected requests")
+                .tag("exception", PriceException.class.getSimpleName())
+                .register(meterRegistry);
+        Gauge.builder("ecar.tariff.snapshots", snapshots, Map::size)
+                .description("Number of tariff sets loaded into memory")
+                .register(meterRegistry);
+    }
+
+    private static Counter snapshotRequests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ecar.tariff.snapshot.requests")
+                .description("Reads of tariff snapshots")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 
     /**
-     * Creates a price and refreshes the application cache.
+     * Creates a price in the tariff set and refreshes the snapshot of the set after commit.
+     * A tariff version with an effective date has to start with its basic price, so special prices
+     * are rejected until it exists.
      *
-     * @param priceDto transfer object received in request
+     * @param tariffSet name of the tariff set
+     * @param priceDto  transfer object received in request
      * @return created price
      * @throws PriceException if the created price causes data integrity
      */
-    @Transactional
-    @CacheEvict(value = "prices", allEntries = true)
-    public PriceDto doCreate(PriceDto priceDto) {
-        Price price = mapper.mapToModel(priceDto);
-        validator.validate(price, repository.findAll());
-        return mapper.mapToDto(repository.save(price));
+    public PriceDto doCreate(String tariffSet, PriceDto priceDto) {
+        return write(tariffSet, precedingVersion -> {
+            Price price = mapper.mapToModel(priceDto);
+            price.setTariffSet(tariffSet);
+            TariffSnapshot preceding = getPrecedingSnapshot(tariffSet, precedingVersion);
+            PriceIndex index = preceding.getIndex(price.getEffectiveFrom());
+            if (price.getEffectiveFrom() != null && price.getRateType() != RateType.BASIC && !index.hasBasicPrice()) {
+                throw new PriceException(MISSING_BASIC_PRICE);
+            }
+            validator.validate(price, index);
+            return mapper.mapToDto(repository.save(price));
+        });
     }
 
     /**
-     * Updates a price and refreshes the application cache.
+     * Updates a price of the tariff set and refreshes the snapshot of the set after commit.
+     * The tariff version of the price cannot be changed. Limiting a special price to some days
+     * removes its date and vice versa, a basic price cannot be limited at all.
      *
-     * @param priceDto transfer object received in request
+     * @param tariffSet name of the tariff set
+     * @param priceDto  transfer object received in request
      * @return updated price
-     * @throws NoSuchPriceException if the price cannot be found
+     * @throws NoSuchPriceException if the price cannot be found in the set
      * @throws PriceException       if the updated price causes data integrity
      */
-    @Transactional
-    @CacheEvict(value = "prices", allEntries = true)
-    public PriceDto doUpdate(PriceDto priceDto) {
-        Price price = repository.findById(priceDto.getId())
-                .orElseThrow(() -> new NoSuchPriceException(priceDto.getId()));
-        updateProperties(price, priceDto);
-        validator.validate(price, repository.findAll());
-        return mapper.mapToDto(price);
+    public PriceDto doUpdate(String tariffSet, PriceDto priceDto) {
+        return write(tariffSet, precedingVersion -> {
+            TariffSnapshot preceding = getPrecedingSnapshot(tariffSet, precedingVersion);
+            Price price = repository.findByIdAndTariffSet(priceDto.getId(), tariffSet)
+                    .orElseThrow(() -> new NoSuchPriceException(priceDto.getId()));
+            updateProperties(price, priceDto);
+            validator.validate(price, preceding.getIndex(price.getEffectiveFrom()));
+            return mapper.mapToDto(price);
+        });
+    }
+
+    /**
+     * Replaces existing prices of the tariff set with the passed schedule in a single transaction.
+     * Without an effective date all prices of all tariff versions of the set are replaced,
+     * otherwise only the version effective from the passed date is replaced or created and has to contain
+     * a basic price. The schedule is validated as a whole and the snapshot is refreshed once after commit.
+     *
+     * @param tariffSet     name of the tariff set
+     * @param priceDtos     transfer objects of all new prices
+     * @param effectiveFrom beginning of the replaced tariff version or null
+     * @return created prices
+     * @throws PriceException if the schedule causes data integrity
+     */
+    public List<PriceDto> doReplaceAll(String tariffSet, List<PriceDto> priceDtos, LocalDateTime effectiveFrom) {
+        return write(tariffSet, precedingVersion -> {
+            List<Price> prices = priceDtos.stream()
+                    .map(mapper::mapToModel)
+                    .collect(Collectors.toList());
+            prices.forEach(price -> {
+                price.setEffectiveFrom(effectiveFrom);
+                price.setTariffSet(tariffSet);
+            });
+            validator.validateAll(prices);
+            if (effectiveFrom != null && prices.stream().noneMatch(price -> price.getRateType() == RateType.BASIC)) {
+                throw new PriceException(MISSING_BASIC_PRICE);
+            }
+            if (effectiveFrom == null) {
+                repository.deleteByTariffSet(tariffSet);
+            } else {
+                repository.deleteByTariffSetAndEffectiveFrom(tariffSet, effectiveFrom);
+            }
+            List<PriceDto> created = new ArrayList<>(prices.size());
+            repository.saveAll(prices).forEach(price -> created.add(mapper.mapToDto(price)));
+            return created;
+        });
     }
 
     private void updateProperties(Price price, PriceDto priceDto) {
@@ -72,6 +201,8 @@ public class PriceService {
         }
         if (price.getRateType() == RateType.SPECIAL) {
             updateTimeInterval(price, priceDto);
+        } else if (priceDto.getDays() != null || priceDto.getDate() != null) {
+            throw new PriceException("Basic price cannot be limited to some days or to a date.");
         }
     }
 
@@ -82,28 +213,221 @@ public class PriceService {
         if (priceDto.getEndHour() != null) {
             price.setEndHour(priceDto.getEndHour());
         }
+        if ((priceDto.getDays() != null && priceDto.getDate() != null) || isEmpty(priceDto.getDays())) {
+            throw new PriceException("Special price may be limited to some days or to a date, but not both.");
+        }
+        if (priceDto.getDays() != null) {
+            price.setDays(EnumSet.copyOf(priceDto.getDays()));
+            price.setDate(null);
+        }
+        if (priceDto.getDate() != null) {
+            price.setDate(priceDto.getDate());
+            price.setDays(null);
+        }
+    }
+
+    private static boolean isEmpty(Set<DayOfWeek> days) {
+        return days != null && days.isEmpty();
     }
 
     /**
-     * Deletes a price if exists and refreshes the application cache.
+     * Deletes a price of the tariff set if exists and refreshes the snapshot of the set after commit.
      *
-     * @param id price id
+     * @param tariffSet name of the tariff set
+     * @param id        price id
+     */
+    public void doDelete(String tariffSet, Integer id) {
+        write(tariffSet, precedingVersion -> {
+            repository.deleteByIdAndTariffSet(id, tariffSet);
+            return null;
+        });
+    }
+
+    /**
+     * Runs the modification in a transaction incrementing the version of the tariff set while holding
+     * the writer lock of the set and refreshes the snapshot of the set once it is committed.
+     * The modification receives the version of the set preceding it.
      */
-    @Transactional
-    @CacheEvict(value = "prices", allEntries = true)
-    public void doDelete(Integer id) {
-        repository.deleteById(id);
+    private <T> T write(String tariffSet, LongFunction<T> modification) {
+        Lock writeLock = getWriteLock(tariffSet);
+        writeLock.lock();
+        try {
+            T result = transactionTemplate.execute(status -> {
+                long version = incrementVersion(tariffSet);
+                return modification.apply(version - 1);
+            });
+            tariffSets.add(tariffSet);
+            refresh(tariffSet);
+            return result;
+        } catch (PriceException e) {
+            priceExceptionCounter.increment();
+            throw e;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Lock getWriteLock(String tariffSet) {
+        return writeLocks.computeIfAbsent(tariffSet, name -> new ReentrantLock(true));
     }
 
     /**
-     * Returns all prices either from database or from the application cache.
-     * By default it uses the built in mechanism, but some external cache provider
-     * can be add to the classpath and registered.
+     * Increments the version of the tariff set, which locks it until the end of the transaction.
+     * The version of a set modified for the first time is created beforehand.
      *
-     * @return all prices
+     * @return incremented version
+     */
+    private long incrementVersion(String tariffSet) {
+        if (tariffVersionRepository.increment(tariffSet) == 0) {
+            createVersion(tariffSet);
+            tariffVersionRepository.increment(tariffSet);
+        }
+        return readVersion(tariffSet);
+    }
+
+    /**
+     * Creates the zero version of the tariff set in a separate transaction. If another instance modifying the set
+     * for the first time has just created it, the duplicate is ignored and its version is incremented instead.
+     */
+    private void createVersion(String tariffSet) {
+        try {
+            newTransactionTemplate.execute(status -> tariffVersionRepository.create(tariffSet));
+        } catch (DataIntegrityViolationException e) {
+            // Created concurrently by another instance
+        }
+    }
+
+    /**
+     * Returns the current snapshot of the tariff set if it has the passed version preceding the running
+     * modification. Otherwise the set has been modified by another instance, so its prices are read within
+     * the transaction of the modification, without replacing the snapshot.
+     */
+    private TariffSnapshot getPrecedingSnapshot(String tariffSet, long version) {
+        TariffSnapshot current = snapshots.get(tariffSet);
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+        return TariffSnapshot.of(tariffSet, version, repository.findByTariffSet(tariffSet));
+    }
+
+    private long readVersion(String tariffSet) {
+        return tariffVersionRepository.findById(tariffSet)
+                .map(TariffVersion::getVersion)
+                .orElse(0L);
+    }
+
+    /**
+     * Refreshes snapshots of loaded tariff sets modified by another instance, i.e. whose versions
+     * in database are greater than the versions of their snapshots. Other sets are left untouched.
+     */
+    public void refreshIfChanged() {
+        Collection<TariffVersion> versions = tariffVersionRepository.findAll();
+        registerTariffSets(versions);
+        for (TariffVersion version : versions) {
+            TariffSnapshot current = snapshots.get(version.getTariffSet());
+            if (current != null && version.getVersion() > current.getVersion()) {
+                refresh(version.getTariffSet());
+            }
+        }
+    }
+
+    private void registerTariffSets(Collection<TariffVersion> versions) {
+        versions.forEach(version -> tariffSets.add(version.getTariffSet()));
+        tariffSetsLoaded = true;
+    }
+
+    private boolean exists(String tariffSet) {
+        if (!tariffSetsLoaded) {
+            registerTariffSets(tariffVersionRepository.findAll());
+        }
+        return tariffSets.contains(tariffSet);
+    }
+
+    /**
+     * Returns copies of all prices of the tariff set from its current snapshot.
+     *
+     * @param tariffSet name of the tariff set
+     * @return all prices of the set
+     */
+    public Collection<PriceDto> findAll(String tariffSet) {
+        return getSnapshot(tariffSet).getPrices().stream()
+                .map(mapper::mapToDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns a page of prices from the passed snapshot ordered by their ids.
+     *
+     * @param snapshot snapshot of prices, usually the current one
+     * @param page     number of the page starting from 0
+     * @param size     size of the page
+     * @return page of prices, possibly empty
+     */
+    public PricePageDto findPage(TariffSnapshot snapshot, int page, int size) {
+        List<Price> prices = snapshot.getPrices();
+        int from = (int) Math.min((long) page * size, prices.size());
+        int to = (int) Math.min((long) from + size, prices.size());
+        PricePageDto pageDto = new PricePageDto();
+        pageDto.setPrices(prices.subList(from, to).stream()
+                .map(mapper::mapToDto)
+                .collect(Collectors.toList()));
+        pageDto.setPage(page);
+        pageDto.setSize(size);
+        pageDto.setTotal(prices.size());
+        return pageDto;
+    }
+
+    /**
+     * Returns all prices of the tariff set compiled into a time-versioned {@link Tariff}.
+     *
+     * @param tariffSet name of the tariff set
+     * @return compiled tariff from the current snapshot of the set
+     */
+    public Tariff getTariff(String tariffSet) {
+        return getSnapshot(tariffSet).getTariff();
+    }
+
+    /**
+     * Returns the current snapshot of prices of the tariff set. It is read from database only once,
+     * later it is replaced with a new one after every committed modification of the set.
+     * Sets which have never been modified, e.g. ones with mistyped names, are not loaded into the registry,
+     * they share {@link TariffSnapshot#EMPTY} instead without reading the database.
+     *
+     * @param tariffSet name of the tariff set
+     * @return current snapshot of the set
+     */
+    public TariffSnapshot getSnapshot(String tariffSet) {
+        TariffSnapshot current = snapshots.get(tariffSet);
+        if (current == null) {
+            if (!exists(tariffSet)) {
+                missCounter.increment();
+                return TariffSnapshot.EMPTY;
+            }
+            Lock writeLock = getWriteLock(tariffSet);
+            writeLock.lock();
+            try {
+                current = snapshots.get(tariffSet);
+                if (current == null) {
+                    missCounter.increment();
+                    return refresh(tariffSet);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        hitCounter.increment();
+        return current;
+    }
+
+    /**
+     * Reads the version of the tariff set and then its prices, so the prices are never older than the version,
+     * and swaps the snapshot of the set unless one with a greater version has been already set.
      */
-    @Cacheable("prices")
-    public Collection<Price> findAll() {
-        return repository.findAll();
+    private TariffSnapshot refresh(String tariffSet) {
+        long version = readVersion(tariffSet);
+        TariffSnapshot candidate = TariffSnapshot.of(tariffSet, version, repository.findByTariffSet(tariffSet));
+        refreshCounter.increment();
+        return snapshots.merge(tariffSet, candidate, (previous, next) ->
+                next.getVersion() >= previous.getVersion() ? next : previous);
     }
 }
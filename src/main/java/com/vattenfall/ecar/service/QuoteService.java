@@ -0,0 +1,162 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.dto.ChargingWindowDto;
+import com.vattenfall.ecar.dto.PriceCurveDto;
+import com.vattenfall.ecar.exception.NoSuchCustomerException;
+import com.vattenfall.ecar.exception.NotEnoughDataException;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.time.temporal.ChronoUnit.MINUTES;
+
+/**
+ * <p>Service which answers questions about future charging processes, e.g. when charging
+ * for a given time is the cheapest.</p>
+ *
+ * <p>Rates of all minutes of the requested time frame are read from the current tariff once
+ * and the cost of a charging process is maintained while sliding it minute by minute,
+ * so the search takes time proportional to the length of the time frame.</p>
+ *
+ * <p>Price curves, i.e. costs of processes of some duration starting at every minute of the day,
+ * are computed from the compiled tariff. They are cached in the <code>curves</code> cache, if it is configured,
+ * by the serial number of the snapshot, the tariff version, the duration and the day pattern, i.e. the day
+ * of the week or the date if they differ, so curves of replaced snapshots are never read again
+ * and curves of other tariff sets stay cached.</p>
+ */
+@Service
+public class QuoteService {
+
+    private static final String CURVES_CACHE = "curves";
+
+    private PriceService priceService;
+    private CustomerIndex customerIndex;
+    private Calculator calculator;
+    private Cache curves;
+
+    public QuoteService(PriceService priceService, CustomerIndex customerIndex, Calculator calculator,
+                        CacheManager cacheManager) {
+        this.priceService = priceService;
+        this.customerIndex = customerIndex;
+        this.calculator = calculator;
+        this.curves = cacheManager.getCache(CURVES_CACHE);
+    }
+
+    /**
+     * Finds the start of the cheapest charging process of the given duration, which starts
+     * not earlier than the passed time and ends not later than the deadline. Among equally cheap
+     * processes the earliest one is chosen.
+     *
+     * @param tariffSet     name of the tariff set
+     * @param customerId    customer id or null if no discount should be applied
+     * @param minutes       duration of the charging process
+     * @param earliestStart earliest start time
+     * @param deadline      latest end time
+     * @return the cheapest charging process
+     * @throws NoSuchCustomerException  if there is no customer with the passed id
+     * @throws NotEnoughDataException   if every process in the time frame requires a missing price
+     * @throws IllegalArgumentException if the process does not fit into the time frame
+     */
+    public ChargingWindowDto findCheapestWindow(String tariffSet, Long customerId, int minutes,
+                                                LocalDateTime earliestStart, LocalDateTime deadline) {
+        boolean vip = isVip(customerId);
+        long frame = MINUTES.between(earliestStart, deadline);
+        if (minutes < 1 || frame < minutes) {
+            throw new IllegalArgumentException("Charging process does not fit into the time frame");
+        }
+        long[] rates = priceService.getSnapshot(tariffSet).getTariff().minuteRatesInMicros(earliestStart, (int) frame);
+        long cost = 0;
+        int unpriced = 0;
+        long bestCost = Long.MAX_VALUE;
+        int bestStart = -1;
+        for (int end = 0; end < rates.length; end++) {
+            if (rates[end] == TariffTable.UNPRICED) {
+                unpriced++;
+            } else {
+                cost += rates[end];
+            }
+            int start = end - minutes + 1;
+            if (start > 0) {
+                if (rates[start - 1] == TariffTable.UNPRICED) {
+                    unpriced--;
+                } else {
+                    cost -= rates[start - 1];
+                }
+            }
+            if (start >= 0 && unpriced == 0 && cost < bestCost) {
+                bestCost = cost;
+                bestStart = start;
+            }
+        }
+        if (bestStart < 0) {
+            throw new NotEnoughDataException("Basic price is missing");
+        }
+        ChargingWindowDto window = new ChargingWindowDto();
+        window.setStart(earliestStart.plusMinutes(bestStart));
+        window.setEnd(window.getStart().plusMinutes(minutes));
+        window.setTotal(calculator.toTotal(bestCost, vip));
+        return window;
+    }
+
+    /**
+     * Calculates total prices of charging processes of the given duration starting at every minute
+     * of the day of the passed time. All processes are priced with the tariff version effective at that time.
+     *
+     * @param tariffSet  name of the tariff set
+     * @param customerId customer id or null if no discount should be applied
+     * @param minutes    duration of charging processes
+     * @param time       time selecting the day and the tariff version
+     * @return totals indexed by the start minute of the day
+     * @throws NoSuchCustomerException if there is no customer with the passed id
+     */
+    public PriceCurveDto findPriceCurve(String tariffSet, Long customerId, int minutes, LocalDateTime time) {
+        boolean vip = isVip(customerId);
+        TariffSnapshot snapshot = priceService.getSnapshot(tariffSet);
+        Tariff tariff = snapshot.getTariff();
+        int version = tariff.versionAt(time);
+        WeekTable table = tariff.getTable(version);
+        LocalDate date = time.toLocalDate();
+        long[] costs;
+        if (curves == null) {
+            costs = table.costCurveInMicros(date, minutes);
+        } else {
+            costs = curves.get(new CurveKey(snapshot.getSerial(), version, minutes, table.curvePattern(date, minutes)),
+                    () -> table.costCurveInMicros(date, minutes));
+        }
+        List<Double> totals = new ArrayList<>(costs.length);
+        for (long cost : costs) {
+            totals.add(cost == TariffTable.UNPRICED ? null : calculator.toTotal(cost, vip));
+        }
+        PriceCurveDto curve = new PriceCurveDto();
+        curve.setDuration(minutes);
+        curve.setTotals(totals);
+        return curve;
+    }
+
+    private boolean isVip(Long customerId) {
+        if (customerId == null) {
+            return false;
+        }
+        Boolean vip = customerIndex.findVip(customerId);
+        if (vip == null) {
+            throw new NoSuchCustomerException(customerId);
+        }
+        return vip;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class CurveKey {
+        private final long snapshotSerial;
+        private final int tariffVersion;
+        private final int minutes;
+        private final Object pattern;
+    }
+}
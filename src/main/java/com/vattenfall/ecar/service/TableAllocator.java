@@ -0,0 +1,30 @@
+package com.vattenfall.ecar.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>Allocates storage of compiled {@link TariffTable}s outside of the heap. Every table gets a direct buffer
+ * of its own, so its records are invisible to the garbage collector and its memory is released by the cleaner
+ * of the buffer as soon as the table becomes unreachable, independently of the tables compiled along with it.</p>
+ *
+ * <p>Direct memory is limited by <code>-XX:MaxDirectMemorySize</code> option, which defaults to the maximum
+ * heap size. An allocation exceeding the limit triggers a garbage collection releasing buffers of replaced
+ * tables before it fails.</p>
+ */
+final class TableAllocator {
+
+    private TableAllocator() {
+    }
+
+    /**
+     * Returns zeroed direct memory of the passed size in the native byte order. The returned buffer
+     * is owned by the caller and must be read with absolute methods only if it is shared between threads.
+     *
+     * @param size size in bytes
+     * @return buffer with position 0 and capacity equal to the size
+     */
+    static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+}
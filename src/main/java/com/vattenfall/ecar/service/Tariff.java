@@ -0,0 +1,164 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.exception.NotEnoughDataException;
+import com.vattenfall.ecar.model.Price;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static java.time.temporal.ChronoUnit.MINUTES;
+
+/**
+ * <p>Immutable, time-versioned tariff. Every version is a complete set of prices effective from
+ * some date and compiled into a {@link WeekTable}. Prices without an effective date form
+ * the base version, which applies before all other ones.</p>
+ *
+ * <p>Versions are kept in an array ordered by their effective dates, so the version applying
+ * to a date is found with a binary search. A charging process is split at version boundaries
+ * and each part is priced with its own version.</p>
+ */
+public class Tariff {
+
+    private final LocalDateTime[] boundaries;
+    private final WeekTable[] tables;
+
+    private Tariff(LocalDateTime[] boundaries, WeekTable[] tables) {
+        this.boundaries = boundaries;
+        this.tables = tables;
+    }
+
+    /**
+     * Compiles the passed prices into versions grouped by their effective dates.
+     *
+     * @param prices prices of all versions
+     * @return compiled tariff
+     */
+    static Tariff compile(Collection<Price> prices) {
+        List<Price> basePrices = prices.stream()
+                .filter(price -> price.getEffectiveFrom() == null)
+                .collect(Collectors.toList());
+        Map<LocalDateTime, List<Price>> versions = prices.stream()
+                .filter(price -> price.getEffectiveFrom() != null)
+                .collect(Collectors.groupingBy(Price::getEffectiveFrom, TreeMap::new, Collectors.toList()));
+        LocalDateTime[] boundaries = versions.keySet().toArray(new LocalDateTime[0]);
+        WeekTable[] tables = new WeekTable[boundaries.length + 1];
+        tables[0] = WeekTable.compile(basePrices);
+        for (int i = 0; i < boundaries.length; i++) {
+            tables[i + 1] = WeekTable.compile(versions.get(boundaries[i]));
+        }
+        return new Tariff(boundaries, tables);
+    }
+
+    /**
+     * Calculates the cost of charging between the passed date times.
+     * Every part of the process is charged with the version effective at that time.
+     *
+     * @param start start time of charging process
+     * @param end   end time of charging process
+     * @return exact total cost in micro-units without any discount
+     * @throws NotEnoughDataException   if the basic price is required but missing in some version
+     * @throws IllegalArgumentException if start is after end
+     */
+    public long costInMicros(LocalDateTime start, LocalDateTime end) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start has to be before end");
+        }
+        int version = versionAt(start);
+        long total = 0;
+        LocalDateTime partStart = start;
+        while (version < boundaries.length && boundaries[version].isBefore(end)) {
+            total = Math.addExact(total, tables[version].costInMicros(partStart, boundaries[version]));
+            partStart = boundaries[version];
+            version++;
+        }
+        return Math.addExact(total, tables[version].costInMicros(partStart, end));
+    }
+
+    /**
+     * Returns rates of consecutive minutes, each of them taken from the version effective at that minute
+     * and from the prices of its date.
+     *
+     * @param start   beginning of the first minute
+     * @param minutes number of minutes
+     * @return rates in micro-units, {@link TariffTable#UNPRICED} for minutes without any price
+     */
+    long[] minuteRatesInMicros(LocalDateTime start, int minutes) {
+        long[] rates = new long[minutes];
+        int version = versionAt(start);
+        long nextBoundary = nextBoundary(start, version);
+        LocalDate date = start.toLocalDate();
+        int minuteOfDay = start.getHour() * 60 + start.getMinute();
+        TariffTable day = tables[version].getDay(date);
+        for (int i = 0; i < minutes; i++) {
+            if (i >= nextBoundary) {
+                version++;
+                nextBoundary = nextBoundary(start, version);
+                day = tables[version].getDay(date);
+            }
+            rates[i] = day.minuteRateInMicros(minuteOfDay);
+            if (++minuteOfDay == TariffTable.MINUTES_PER_DAY) {
+                minuteOfDay = 0;
+                date = date.plusDays(1);
+                day = tables[version].getDay(date);
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Returns the offset in minutes from the passed start to the beginning of the version following the passed one.
+     */
+    private long nextBoundary(LocalDateTime start, int version) {
+        return version < boundaries.length ? MINUTES.between(start, boundaries[version]) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the index of the version the whole charging process is charged with.
+     *
+     * @param start start time of charging process
+     * @param end   end time of charging process
+     * @return index of the version or -1 if the process spans many versions
+     */
+    int versionOf(LocalDateTime start, LocalDateTime end) {
+        int version = versionAt(start);
+        return version < boundaries.length && boundaries[version].isBefore(end) ? -1 : version;
+    }
+
+    /**
+     * @param version index of the version
+     * @return compiled prices of the version
+     */
+    WeekTable getTable(int version) {
+        return tables[version];
+    }
+
+    /**
+     * @return number of versions including the base one
+     */
+    public int getVersionCount() {
+        return tables.length;
+    }
+
+    /**
+     * Returns the index of the version effective at the passed time,
+     * i.e. the number of versions other than the base one effective not later than it.
+     */
+    int versionAt(LocalDateTime time) {
+        int low = 0;
+        int high = boundaries.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (boundaries[middle].isAfter(time)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,49 @@
+package com.vattenfall.ecar.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically checks the tariff version in database, so modifications of prices made
+ * by other application instances are picked up within the interval specified in the property
+ * <code>tariff.polling.interval</code> in milliseconds. Polling can be disabled with the property
+ * <code>tariff.polling.enabled</code>.
+ *
+ * <p>Polling is stopped at the beginning of the context shutdown, after a running check completes,
+ * so no checks hit the database while it is being closed.</p>
+ */
+@Component
+@ConditionalOnProperty(name = "tariff.polling.enabled", matchIfMissing = true)
+public class TariffPoller implements SmartLifecycle {
+
+    private PriceService priceService;
+    private boolean running;
+
+    public TariffPoller(PriceService priceService) {
+        this.priceService = priceService;
+    }
+
+    @Scheduled(fixedDelayString = "${tariff.polling.interval:1000}")
+    public synchronized void poll() {
+        if (running) {
+            priceService.refreshIfChanged();
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return running;
+    }
+}
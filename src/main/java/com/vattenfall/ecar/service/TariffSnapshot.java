@@ -0,0 +1,158 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.model.Price;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Immutable, version-numbered state of all prices of a tariff set. It holds detached copies of the prices,
+ * so it can be shared by all readers without touching the persistence context.</p>
+ *
+ * <p>Snapshots with greater versions reflect later states of the database. Since the version is read
+ * before the prices, two snapshots with the same version may differ, so every snapshot has also a serial
+ * number unique within the application. Prices are grouped by their effective dates into tariff versions,
+ * which are indexed separately.</p>
+ */
+public class TariffSnapshot {
+
+    private static final PriceIndex EMPTY_INDEX = PriceIndex.of(Collections.emptyList());
+
+    private static final AtomicLong SERIALS = new AtomicLong();
+
+    /**
+     * Snapshot of no prices shared by all tariff sets which have never been modified.
+     */
+    static final TariffSnapshot EMPTY = new TariffSnapshot("", 0, Collections.emptyList());
+
+    @Getter
+    private final String tariffSet;
+
+    @Getter
+    private final long version;
+
+    private final long serial = SERIALS.incrementAndGet();
+
+    private final List<Price> prices;
+
+    private final String tag;
+
+    @Getter
+    private final Tariff tariff;
+
+    private final Map<LocalDateTime, PriceIndex> indexes;
+
+    private TariffSnapshot(String tariffSet, long version, List<Price> prices) {
+        this.tariffSet = tariffSet;
+        this.version = version;
+        this.prices = Collections.unmodifiableList(prices);
+        this.tag = tariffSet + "-" + version + "-" + contentHash(prices);
+        this.tariff = Tariff.compile(prices);
+        Map<LocalDateTime, List<Price>> versions = new HashMap<>();
+        for (Price price : prices) {
+            versions.computeIfAbsent(price.getEffectiveFrom(), effectiveFrom -> new ArrayList<>()).add(price);
+        }
+        this.indexes = new HashMap<>();
+        versions.forEach((effectiveFrom, versionPrices) -> indexes.put(effectiveFrom, PriceIndex.of(versionPrices)));
+    }
+
+    /**
+     * Creates a snapshot of the passed prices of the default tariff set.
+     *
+     * @param version version of the snapshot
+     * @param prices  all prices of the set, they are copied
+     * @return new snapshot
+     */
+    static TariffSnapshot of(long version, Collection<Price> prices) {
+        return of(Price.DEFAULT_TARIFF_SET, version, prices);
+    }
+
+    /**
+     * Creates a snapshot of the passed prices.
+     *
+     * @param tariffSet name of the tariff set
+     * @param version   version of the snapshot
+     * @param prices    all prices of the set, they are copied
+     * @return new snapshot
+     */
+    static TariffSnapshot of(String tariffSet, long version, Collection<Price> prices) {
+        return new TariffSnapshot(tariffSet, version, prices.stream()
+                .map(TariffSnapshot::copy)
+                .sorted(Comparator.comparing(Price::getId, Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Returns a tag identifying the state of prices, e.g. to be used as an http entity tag.
+     * It is derived from the tariff set, the version stored in database and a hash of the prices,
+     * so it is the same on all instances sharing the database and it changes with the prices
+     * even if versions are numbered anew, e.g. in a recreated database.
+     *
+     * @return tag of this snapshot
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @return number unique among snapshots of this application
+     */
+    long getSerial() {
+        return serial;
+    }
+
+    /**
+     * @return prices in this snapshot ordered by their ids, they must not be modified
+     */
+    List<Price> getPrices() {
+        return prices;
+    }
+
+    /**
+     * @param effectiveFrom beginning of a tariff version, null for the base version
+     * @return index of prices of the version used for overlap detection
+     */
+    PriceIndex getIndex(LocalDateTime effectiveFrom) {
+        return indexes.getOrDefault(effectiveFrom, EMPTY_INDEX);
+    }
+
+    /**
+     * Hashes the fields of the prices, it depends neither on identity hash codes nor on the JVM.
+     */
+    private static String contentHash(List<Price> prices) {
+        CRC32 crc = new CRC32();
+        for (Price price : prices) {
+            String fields = price.getId() + "," + price.getMinuteRate() + "," + price.getStartHour() + ","
+                    + price.getEndHour() + "," + price.getRateType() + "," + price.getDays() + ","
+                    + price.getDate() + "," + price.getEffectiveFrom() + ";";
+            crc.update(fields.getBytes(StandardCharsets.UTF_8));
+        }
+        return Long.toString(crc.getValue(), Character.MAX_RADIX);
+    }
+
+    private static Price copy(Price price) {
+        Price copy = new Price();
+        copy.setId(price.getId());
+        copy.setMinuteRate(price.getMinuteRate());
+        copy.setStartHour(price.getStartHour());
+        copy.setEndHour(price.getEndHour());
+        copy.setRateType(price.getRateType());
+        copy.setDays(price.getDays() == null ? null : Collections.unmodifiableSet(EnumSet.copyOf(price.getDays())));
+        copy.setDate(price.getDate());
+        copy.setEffectiveFrom(price.getEffectiveFrom());
+        copy.setTariffSet(price.getTariffSet());
+        return copy;
+    }
+}
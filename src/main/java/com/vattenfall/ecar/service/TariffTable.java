@@ -0,0 +1,250 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.exception.NotEnoughDataException;
+import com.vattenfall.ecar.model.Price;
+import com.vattenfall.ecar.model.RateType;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+
+import static java.time.temporal.ChronoUnit.MINUTES;
+
+/**
+ * <p>Immutable daily tariff compiled into a minute-of-day table. For every minute of the day
+ * it holds the cumulative cost in micro-units and the cumulative time of special prices, so the cost
+ * of any charging process is obtained from a few record lookups regardless of its length
+ * and of the number of defined prices.</p>
+ *
+ * <p>Minutes which are not covered by any special price are charged with the basic rate.</p>
+ *
+ * <p>The table is packed into {@value #RECORD_COUNT} fixed-width records in direct memory allocated
+ * by {@link TableAllocator}. Record <code>i</code> holds the cumulative cost of special prices before
+ * minute <code>i</code> as a long followed by the cumulative number of special minutes as an int.
+ * Records are read in place with absolute methods, so the table is safe for concurrent use and occupies
+ * only a few dozen bytes of the heap regardless of the number of prices.</p>
+ */
+public class TariffTable {
+
+    static final int MINUTES_PER_DAY = 1440;
+
+    /**
+     * Rate of minutes which are not covered by any price.
+     */
+    static final long UNPRICED = -1;
+
+    static final int RECORD_COUNT = MINUTES_PER_DAY + 1;
+    static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final ByteBuffer records;
+    private final Long basicRate;
+
+    private TariffTable(ByteBuffer records, Long basicRate) {
+        this.records = records;
+        this.basicRate = basicRate;
+    }
+
+    /**
+     * Compiles the passed prices applying every day into a table. Periods containing midnight continue
+     * on the following day, so they cover the end and the beginning of the day.
+     *
+     * @param prices all defined prices
+     * @return compiled tariff
+     */
+    static TariffTable compile(Collection<Price> prices) {
+        return compile(prices, prices);
+    }
+
+    /**
+     * Compiles the passed prices of a single day into a table. Periods containing midnight are cut at it,
+     * their parts after midnight are taken from the prices of the previous day and they take precedence
+     * over prices of the day.
+     *
+     * @param prices         basic price and special prices starting on the day
+     * @param previousPrices special prices starting on the previous day, only their parts after midnight apply
+     * @return compiled tariff
+     */
+    static TariffTable compile(Collection<Price> prices, Collection<Price> previousPrices) {
+        long[] rates = new long[MINUTES_PER_DAY];
+        boolean[] special = new boolean[MINUTES_PER_DAY];
+        Long basicRate = null;
+        for (Price price : prices) {
+            long rate = Money.toMicros(price.getMinuteRate());
+            if (price.getRateType() == RateType.BASIC) {
+                basicRate = rate;
+            } else {
+                int start = minuteOfDay(price.getStartHour());
+                int end = Math.min(start + windowLength(start, minuteOfDay(price.getEndHour())), MINUTES_PER_DAY);
+                fill(rates, special, start, end, rate);
+            }
+        }
+        for (Price price : previousPrices) {
+            if (continuesAfterMidnight(price)) {
+                fill(rates, special, 0, minuteOfDay(price.getEndHour()), Money.toMicros(price.getMinuteRate()));
+            }
+        }
+        ByteBuffer records = TableAllocator.allocate(RECORD_COUNT * RECORD_SIZE);
+        records.position(RECORD_SIZE);
+        long cost = 0;
+        int time = 0;
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            cost += rates[minute];
+            time += special[minute] ? 1 : 0;
+            records.putLong(cost).putInt(time);
+        }
+        return new TariffTable(records, basicRate);
+    }
+
+    /**
+     * Calculates the cost of charging between the passed date times.
+     *
+     * @param start start time of charging process
+     * @param end   end time of charging process
+     * @return exact total cost in micro-units without any discount
+     * @throws NotEnoughDataException   if the basic price is required but missing
+     * @throws IllegalArgumentException if start is after end
+     */
+    public long costInMicros(LocalDateTime start, LocalDateTime end) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start has to be before end");
+        }
+        long minutes = MINUTES.between(start, end);
+        int from = minuteOfDay(start.toLocalTime());
+        long days = minutes / MINUTES_PER_DAY;
+        int rest = (int) (minutes % MINUTES_PER_DAY);
+        long cost = days * specialCost(MINUTES_PER_DAY) + sumOfSpecialCost(from, rest);
+        long time = days * specialTime(MINUTES_PER_DAY) + sumOfSpecialTime(from, rest);
+        if (time < minutes) {
+            cost += (minutes - time) * getBasicRate();
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the rate of the passed minute of the day.
+     *
+     * @param minuteOfDay minute of the day from 0 to 1439
+     * @return rate in micro-units or {@link #UNPRICED} if the basic price is required but missing
+     */
+    long minuteRateInMicros(int minuteOfDay) {
+        if (specialTime(minuteOfDay + 1) > specialTime(minuteOfDay)) {
+            return specialCost(minuteOfDay + 1) - specialCost(minuteOfDay);
+        }
+        return basicRate == null ? UNPRICED : basicRate;
+    }
+
+    /**
+     * Calculates costs of charging processes of the given duration starting at every minute of the day
+     * in a single pass over the minutes of two consecutive days.
+     *
+     * @param minutes duration of charging processes
+     * @return costs in micro-units indexed by the start minute of the day, {@link #UNPRICED} for processes
+     * which require the missing basic price
+     */
+    long[] costCurveInMicros(int minutes) {
+        long[] cost = new long[2 * MINUTES_PER_DAY + 1];
+        int[] unpriced = new int[2 * MINUTES_PER_DAY + 1];
+        for (int minute = 0; minute < 2 * MINUTES_PER_DAY; minute++) {
+            long rate = minuteRateInMicros(minute % MINUTES_PER_DAY);
+            cost[minute + 1] = cost[minute] + (rate == UNPRICED ? 0 : rate);
+            unpriced[minute + 1] = unpriced[minute] + (rate == UNPRICED ? 1 : 0);
+        }
+        int days = minutes / MINUTES_PER_DAY;
+        int rest = minutes % MINUTES_PER_DAY;
+        boolean daysPriced = days == 0 || unpriced[MINUTES_PER_DAY] == 0;
+        long daysCost = Math.multiplyExact(days, cost[MINUTES_PER_DAY]);
+        long[] curve = new long[MINUTES_PER_DAY];
+        for (int start = 0; start < MINUTES_PER_DAY; start++) {
+            boolean priced = daysPriced && unpriced[start + rest] == unpriced[start];
+            curve[start] = priced ? daysCost + cost[start + rest] - cost[start] : UNPRICED;
+        }
+        return curve;
+    }
+
+    /**
+     * @param from first minute of the day
+     * @param to   minute of the day following the last one, at most {@value #MINUTES_PER_DAY}
+     * @return cost of special prices between the passed minutes in micro-units
+     */
+    long specialCostBetween(int from, int to) {
+        return specialCost(to) - specialCost(from);
+    }
+
+    /**
+     * @param from first minute of the day
+     * @param to   minute of the day following the last one, at most {@value #MINUTES_PER_DAY}
+     * @return number of minutes covered by special prices between the passed minutes
+     */
+    int specialTimeBetween(int from, int to) {
+        return specialTime(to) - specialTime(from);
+    }
+
+    /**
+     * @return rate of the basic price in micro-units or null if it is missing
+     */
+    Long getBasicRateOrNull() {
+        return basicRate;
+    }
+
+    private long getBasicRate() {
+        if (basicRate == null) {
+            throw new NotEnoughDataException("Basic price is missing");
+        }
+        return basicRate;
+    }
+
+    private long specialCost(int minute) {
+        return records.getLong(minute * RECORD_SIZE);
+    }
+
+    private int specialTime(int minute) {
+        return records.getInt(minute * RECORD_SIZE + Long.BYTES);
+    }
+
+    private long sumOfSpecialCost(int from, int length) {
+        int to = from + length;
+        if (to <= MINUTES_PER_DAY) {
+            return specialCost(to) - specialCost(from);
+        }
+        return specialCost(MINUTES_PER_DAY) - specialCost(from) + specialCost(to - MINUTES_PER_DAY);
+    }
+
+    private int sumOfSpecialTime(int from, int length) {
+        int to = from + length;
+        if (to <= MINUTES_PER_DAY) {
+            return specialTime(to) - specialTime(from);
+        }
+        return specialTime(MINUTES_PER_DAY) - specialTime(from) + specialTime(to - MINUTES_PER_DAY);
+    }
+
+    /**
+     * @param price any price
+     * @return true if the price is special and its period continues after midnight of the day it starts on
+     */
+    static boolean continuesAfterMidnight(Price price) {
+        if (price.getRateType() != RateType.SPECIAL) {
+            return false;
+        }
+        int start = minuteOfDay(price.getStartHour());
+        return start + windowLength(start, minuteOfDay(price.getEndHour())) > MINUTES_PER_DAY;
+    }
+
+    private static void fill(long[] rates, boolean[] special, int from, int to, long rate) {
+        for (int minute = from; minute < to; minute++) {
+            rates[minute] = rate;
+            special[minute] = true;
+        }
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    /**
+     * Equal start and end describe 24 hours, as in {@link Intervals}.
+     */
+    private static int windowLength(int start, int end) {
+        return start < end ? end - start : MINUTES_PER_DAY - start + end;
+    }
+}
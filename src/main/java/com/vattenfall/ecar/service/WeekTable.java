@@ -0,0 +1,313 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.exception.NotEnoughDataException;
+import com.vattenfall.ecar.model.Price;
+import com.vattenfall.ecar.model.RateType;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.vattenfall.ecar.service.TariffTable.MINUTES_PER_DAY;
+import static com.vattenfall.ecar.service.TariffTable.UNPRICED;
+import static java.time.temporal.ChronoUnit.MINUTES;
+
+/**
+ * <p>Immutable tariff compiled into a week table and a calendar of overrides. Every day of the week
+ * is compiled into a {@link TariffTable} of the basic price, the weekly special prices applying on that day
+ * and the parts after midnight of the ones applying on the previous day, days with the same prices share
+ * one table. Every date with its own special prices, e.g. a holiday, is compiled into a separate table,
+ * which replaces the table of its day of the week. So is the next date if its beginning differs
+ * from its day of the week, because a period of the date or a replaced weekly period contains midnight.</p>
+ *
+ * <p>Cumulative costs and times of special prices are kept for the beginnings of all days of the week,
+ * so the cost of a charging process is obtained as if there were no overrides from a few lookups
+ * regardless of its length. Overrides are kept sorted by their dates and only the ones crossed
+ * by the process are found with a binary search and corrected, so the cost of a multi-week process
+ * is proportional to the number of crossed overrides instead of the number of days.</p>
+ */
+class WeekTable {
+
+    static final int DAYS_PER_WEEK = 7;
+    static final int MINUTES_PER_WEEK = DAYS_PER_WEEK * MINUTES_PER_DAY;
+
+    private final TariffTable[] days;
+    private final long[] weekSpecialCost;
+    private final int[] weekSpecialTime;
+    private final boolean uniform;
+    private final LocalDate[] overrideDates;
+    private final TariffTable[] overrides;
+    private final Long basicRate;
+
+    private WeekTable(TariffTable[] days, boolean uniform, LocalDate[] overrideDates, TariffTable[] overrides) {
+        this.days = days;
+        this.uniform = uniform;
+        this.overrideDates = overrideDates;
+        this.overrides = overrides;
+        this.basicRate = days[0].getBasicRateOrNull();
+        this.weekSpecialCost = new long[DAYS_PER_WEEK + 1];
+        this.weekSpecialTime = new int[DAYS_PER_WEEK + 1];
+        for (int day = 0; day < DAYS_PER_WEEK; day++) {
+            weekSpecialCost[day + 1] = weekSpecialCost[day] + days[day].specialCostBetween(0, MINUTES_PER_DAY);
+            weekSpecialTime[day + 1] = weekSpecialTime[day] + days[day].specialTimeBetween(0, MINUTES_PER_DAY);
+        }
+    }
+
+    /**
+     * Compiles the passed prices of a single tariff version.
+     *
+     * @param prices basic, weekly and dated prices
+     * @return compiled tariff
+     */
+    static WeekTable compile(Collection<Price> prices) {
+        List<Price> common = new ArrayList<>(1);
+        List<Price> weekly = new ArrayList<>();
+        Map<LocalDate, List<Price>> dated = new TreeMap<>();
+        for (Price price : prices) {
+            if (price.getRateType() == RateType.BASIC) {
+                common.add(price);
+            } else if (price.getDate() != null) {
+                dated.computeIfAbsent(price.getDate(), date -> new ArrayList<>()).add(price);
+            } else {
+                weekly.add(price);
+            }
+        }
+        TariffTable[] days = new TariffTable[DAYS_PER_WEEK];
+        Map<BitSet, TariffTable> distinct = new HashMap<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            BitSet applying = new BitSet();
+            List<Price> dayPrices = new ArrayList<>(common);
+            List<Price> previousPrices = new ArrayList<>();
+            for (int i = 0; i < weekly.size(); i++) {
+                if (appliesOn(weekly.get(i), day)) {
+                    applying.set(i);
+                    dayPrices.add(weekly.get(i));
+                }
+                if (appliesOn(weekly.get(i), day.minus(1)) && TariffTable.continuesAfterMidnight(weekly.get(i))) {
+                    applying.set(weekly.size() + i);
+                    previousPrices.add(weekly.get(i));
+                }
+            }
+            days[day.ordinal()] = distinct.computeIfAbsent(applying,
+                    key -> TariffTable.compile(dayPrices, previousPrices));
+        }
+        TreeMap<LocalDate, TariffTable> calendar = new TreeMap<>();
+        for (Map.Entry<LocalDate, List<Price>> entry : dated.entrySet()) {
+            LocalDate date = entry.getKey();
+            List<Price> datePrices = new ArrayList<>(common);
+            datePrices.addAll(entry.getValue());
+            calendar.put(date, TariffTable.compile(datePrices,
+                    dated.getOrDefault(date.minusDays(1), Collections.emptyList())));
+            LocalDate next = date.plusDays(1);
+            if (!dated.containsKey(next) && changesNextDay(entry.getValue(), weekly, date.getDayOfWeek())) {
+                List<Price> nextPrices = new ArrayList<>(common);
+                weekly.stream().filter(price -> appliesOn(price, next.getDayOfWeek())).forEach(nextPrices::add);
+                calendar.put(next, TariffTable.compile(nextPrices, entry.getValue()));
+            }
+        }
+        LocalDate[] overrideDates = calendar.keySet().toArray(new LocalDate[0]);
+        TariffTable[] overrides = calendar.values().toArray(new TariffTable[0]);
+        return new WeekTable(days, distinct.size() == 1, overrideDates, overrides);
+    }
+
+    private static boolean appliesOn(Price price, DayOfWeek day) {
+        return price.getDays() == null || price.getDays().contains(day);
+    }
+
+    /**
+     * Checks if the beginning of the day following a date with its own prices differs from its day of the week,
+     * i.e. if a price of the date continues after midnight or a weekly price replaced on the date would do so.
+     */
+    private static boolean changesNextDay(List<Price> datePrices, List<Price> weekly, DayOfWeek day) {
+        return datePrices.stream().anyMatch(TariffTable::continuesAfterMidnight) || weekly.stream()
+                .anyMatch(price -> appliesOn(price, day) && TariffTable.continuesAfterMidnight(price));
+    }
+
+    /**
+     * Calculates the cost of charging between the passed date times.
+     *
+     * @param start start time of charging process
+     * @param end   end time of charging process
+     * @return exact total cost in micro-units without any discount
+     * @throws NotEnoughDataException   if the basic price is required but missing
+     * @throws IllegalArgumentException if start is after end
+     */
+    long costInMicros(LocalDateTime start, LocalDateTime end) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start has to be before end");
+        }
+        if (uniform && !hasOverrideBetween(start.toLocalDate(), end.toLocalDate())) {
+            return days[0].costInMicros(start, end);
+        }
+        long cost = costOrUnpriced(start, end);
+        if (cost == UNPRICED) {
+            throw new NotEnoughDataException("Basic price is missing");
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the table of prices applying on the passed date.
+     *
+     * @param date any date
+     * @return table of the override of the date or of its day of the week
+     */
+    TariffTable getDay(LocalDate date) {
+        int override = firstOverrideFrom(date);
+        if (override < overrideDates.length && overrideDates[override].equals(date)) {
+            return overrides[override];
+        }
+        return days[date.getDayOfWeek().ordinal()];
+    }
+
+    /**
+     * Returns the position of the start of a charging process within the period the table repeats with,
+     * i.e. the minute of the day if all days have the same prices or the minute of the week otherwise.
+     * Processes of the same duration and position have the same cost unless they cross an override.
+     *
+     * @param start start time of charging process
+     * @param end   end time of charging process
+     * @return position of the start or -1 if the process crosses a date with its own prices
+     */
+    int periodicMinuteOf(LocalDateTime start, LocalDateTime end) {
+        if (hasOverrideBetween(start.toLocalDate(), end.toLocalDate())) {
+            return -1;
+        }
+        return uniform ? minuteOfDay(start) : minuteOfWeek(start);
+    }
+
+    /**
+     * Calculates costs of charging processes of the given duration starting at every minute of the passed date.
+     *
+     * @param date    date of the starts of processes
+     * @param minutes duration of charging processes
+     * @return costs in micro-units indexed by the start minute of the day, {@link TariffTable#UNPRICED} for processes
+     * which require the missing basic price
+     */
+    long[] costCurveInMicros(LocalDate date, int minutes) {
+        if (uniform && !hasOverrideBetween(date, lastDayOfCurve(date, minutes))) {
+            return days[0].costCurveInMicros(minutes);
+        }
+        long[] curve = new long[MINUTES_PER_DAY];
+        LocalDateTime midnight = date.atStartOfDay();
+        for (int start = 0; start < MINUTES_PER_DAY; start++) {
+            LocalDateTime processStart = midnight.plusMinutes(start);
+            curve[start] = costOrUnpriced(processStart, processStart.plusMinutes(minutes));
+        }
+        return curve;
+    }
+
+    /**
+     * Returns a key which is equal for dates with equal curves of the given duration: nothing if all days
+     * have the same prices, the day of the week if the curve does not cross any override or the date otherwise.
+     *
+     * @param date    date of the starts of processes
+     * @param minutes duration of charging processes
+     * @return key of the curve, possibly null
+     */
+    Object curvePattern(LocalDate date, int minutes) {
+        if (hasOverrideBetween(date, lastDayOfCurve(date, minutes))) {
+            return date;
+        }
+        return uniform ? null : date.getDayOfWeek();
+    }
+
+    private static LocalDate lastDayOfCurve(LocalDate date, int minutes) {
+        return date.plusDays((MINUTES_PER_DAY - 1 + (long) minutes) / MINUTES_PER_DAY);
+    }
+
+    /**
+     * Sums costs of the weekly tables and corrects them on the crossed overrides only.
+     */
+    private long costOrUnpriced(LocalDateTime start, LocalDateTime end) {
+        long minutes = MINUTES.between(start, end);
+        int from = minuteOfWeek(start);
+        long weeks = minutes / MINUTES_PER_WEEK;
+        int rest = (int) (minutes % MINUTES_PER_WEEK);
+        long cost = weeks * weekSpecialCost(MINUTES_PER_WEEK) + sumOfSpecialCost(from, rest);
+        long time = weeks * weekSpecialTime(MINUTES_PER_WEEK) + sumOfSpecialTime(from, rest);
+        LocalDate firstDay = start.toLocalDate();
+        LocalDate lastDay = end.toLocalDate();
+        for (int i = firstOverrideFrom(firstDay); i < overrideDates.length && !overrideDates[i].isAfter(lastDay); i++) {
+            LocalDate date = overrideDates[i];
+            int dayFrom = date.equals(firstDay) ? minuteOfDay(start) : 0;
+            int dayTo = date.equals(lastDay) ? minuteOfDay(end) : MINUTES_PER_DAY;
+            TariffTable replaced = days[date.getDayOfWeek().ordinal()];
+            cost += overrides[i].specialCostBetween(dayFrom, dayTo) - replaced.specialCostBetween(dayFrom, dayTo);
+            time += overrides[i].specialTimeBetween(dayFrom, dayTo) - replaced.specialTimeBetween(dayFrom, dayTo);
+        }
+        if (time < minutes) {
+            if (basicRate == null) {
+                return UNPRICED;
+            }
+            cost += (minutes - time) * basicRate;
+        }
+        return cost;
+    }
+
+    private long weekSpecialCost(int minuteOfWeek) {
+        int day = minuteOfWeek / MINUTES_PER_DAY;
+        int minute = minuteOfWeek % MINUTES_PER_DAY;
+        return minute == 0 ? weekSpecialCost[day] : weekSpecialCost[day] + days[day].specialCostBetween(0, minute);
+    }
+
+    private int weekSpecialTime(int minuteOfWeek) {
+        int day = minuteOfWeek / MINUTES_PER_DAY;
+        int minute = minuteOfWeek % MINUTES_PER_DAY;
+        return minute == 0 ? weekSpecialTime[day] : weekSpecialTime[day] + days[day].specialTimeBetween(0, minute);
+    }
+
+    private long sumOfSpecialCost(int from, int length) {
+        int to = from + length;
+        if (to <= MINUTES_PER_WEEK) {
+            return weekSpecialCost(to) - weekSpecialCost(from);
+        }
+        return weekSpecialCost(MINUTES_PER_WEEK) - weekSpecialCost(from) + weekSpecialCost(to - MINUTES_PER_WEEK);
+    }
+
+    private int sumOfSpecialTime(int from, int length) {
+        int to = from + length;
+        if (to <= MINUTES_PER_WEEK) {
+            return weekSpecialTime(to) - weekSpecialTime(from);
+        }
+        return weekSpecialTime(MINUTES_PER_WEEK) - weekSpecialTime(from) + weekSpecialTime(to - MINUTES_PER_WEEK);
+    }
+
+    private boolean hasOverrideBetween(LocalDate first, LocalDate last) {
+        int override = firstOverrideFrom(first);
+        return override < overrideDates.length && !overrideDates[override].isAfter(last);
+    }
+
+    /**
+     * Returns the index of the first override not earlier than the passed date.
+     */
+    private int firstOverrideFrom(LocalDate date) {
+        int low = 0;
+        int high = overrideDates.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (overrideDates[middle].isBefore(date)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int minuteOfWeek(LocalDateTime time) {
+        return time.getDayOfWeek().ordinal() * MINUTES_PER_DAY + minuteOfDay(time);
+    }
+
+    private static int minuteOfDay(LocalDateTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+}
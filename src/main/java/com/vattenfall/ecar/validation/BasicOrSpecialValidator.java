@@ -10,6 +10,9 @@ class BasicOrSpecialValidator implements ConstraintValidator<BasicOrSpecial, Pri
 
     @Override
     public boolean isValid(PriceDto price, ConstraintValidatorContext context) {
+        if (price == null) {
+            return true;
+        }
         LocalTime startHour = price.getStartHour();
         LocalTime endHour = price.getEndHour();
         return (startHour == null && endHour == null) || (startHour != null && endHour != null);
@@ -0,0 +1,22 @@
+package com.vattenfall.ecar.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+@Target({TYPE, ANNOTATION_TYPE, PARAMETER, TYPE_USE})
+@Retention(RUNTIME)
+@Constraint(validatedBy = DaysOrDateValidator.class)
+@interface DaysOrDate {
+
+    String message() default "special price may be limited to some days or to a date, but not both";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+}
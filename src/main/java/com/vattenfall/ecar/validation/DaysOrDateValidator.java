@@ -0,0 +1,20 @@
+package com.vattenfall.ecar.validation;
+
+import com.vattenfall.ecar.dto.PriceDto;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+class DaysOrDateValidator implements ConstraintValidator<DaysOrDate, PriceDto> {
+
+    @Override
+    public boolean isValid(PriceDto price, ConstraintValidatorContext context) {
+        if (price == null || (price.getDays() == null && price.getDate() == null)) {
+            return true;
+        }
+        boolean special = price.getStartHour() != null || price.getEndHour() != null;
+        boolean oneRule = price.getDays() == null || price.getDate() == null;
+        return special && oneRule && (price.getDays() == null || !price.getDays().isEmpty());
+    }
+
+}
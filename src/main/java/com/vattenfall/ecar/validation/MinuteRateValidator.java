@@ -9,7 +9,7 @@ class MinuteRateValidator implements ConstraintValidator<MinuteRateNotNull, Pric
 
     @Override
     public boolean isValid(PriceDto price, ConstraintValidatorContext context) {
-        return price.getMinuteRate() != null;
+        return price == null || price.getMinuteRate() != null;
     }
 
 }
@@ -11,11 +11,12 @@ import java.lang.annotation.Target;
 import static java.lang.annotation.ElementType.*;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
-@Target({TYPE, ANNOTATION_TYPE, PARAMETER})
+@Target({TYPE, ANNOTATION_TYPE, PARAMETER, TYPE_USE})
 @Retention(RUNTIME)
 @Documented
 @BasicOrSpecial
 @MinuteRateNotNull
+@DaysOrDate
 @ConstraintComposition
 @Constraint(validatedBy = {})
 public @interface NewPrice {
@@ -0,0 +1,37 @@
+package com.vattenfall.ecar.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import javax.validation.ReportAsSingleViolation;
+import javax.validation.constraints.Pattern;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Name of a tariff set consists of 1 to 64 letters, digits, underscores and hyphens,
+ * so it can be safely used in entity tags and urls.
+ */
+@Target({FIELD, ANNOTATION_TYPE, PARAMETER, TYPE_USE})
+@Retention(RUNTIME)
+@Documented
+@Pattern(regexp = TariffSetName.PATTERN)
+@ReportAsSingleViolation
+@Constraint(validatedBy = {})
+public @interface TariffSetName {
+
+    /**
+     * Regular expression matched by valid names.
+     */
+    String PATTERN = "[\\w-]{1,64}";
+
+    String message() default "invalid tariff set name";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+
+}
@@ -1,17 +1,44 @@
 package com.vattenfall.ecar;
 
+import com.vattenfall.ecar.dto.PriceDto;
+import com.vattenfall.ecar.exception.PriceException;
 import com.vattenfall.ecar.model.Customer;
+import com.vattenfall.ecar.model.Price;
 import com.vattenfall.ecar.repository.CustomerRepository;
+import com.vattenfall.ecar.repository.PriceRepository;
+import com.vattenfall.ecar.service.CustomerIndex;
+import com.vattenfall.ecar.service.PriceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.h2.tools.Server;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.vattenfall.ecar.model.Price.DEFAULT_TARIFF_SET;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -23,6 +50,18 @@ public class ECarApplicationTest {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private CustomerIndex customerIndex;
+
+    @Autowired
+    private PriceRepository priceRepository;
+
+    @Autowired
+    private PriceService priceService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     public void contextLoads() {
         logger.info("Context loads!");
@@ -34,6 +73,171 @@ public class ECarApplicationTest {
                 .hasSize(3)
                 .filteredOn(Customer::getVip)
                 .hasSize(2);
+        assertThat(customerIndex.getVip(1L)).isTrue();
+        assertThat(customerIndex.getVip(3L)).isFalse();
+        assertThat(meterRegistry.get("ecar.customers.load").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldPublishCacheStatistics() {
+        assertThat(customerIndex.findVip(-1L)).isNull();
+
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "customers").tag("result", "miss")
+                .functionCounter().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void shouldReadCustomersMissingInIndexFromDatabase() {
+        Customer customer = new Customer();
+        customer.setId(100L);
+        customer.setVip(true);
+        customerRepository.save(customer);
+
+        assertThat(customerIndex.getVip(100L)).isNull();
+        assertThat(customerIndex.findVip(100L)).isTrue();
+        assertThat(customerIndex.getVip(100L)).isTrue();
+
+        customerRepository.deleteById(100L);
+    }
+
+    @Test
+    public void shouldReplaceOnlyOneTariffVersion() {
+        PriceDto basePrice = new PriceDto();
+        basePrice.setMinuteRate(1.0);
+        PriceDto newPrice = new PriceDto();
+        newPrice.setMinuteRate(2.0);
+        LocalDateTime may = LocalDateTime.of(2019, Month.MAY, 1, 0, 0);
+        priceService.doReplaceAll(DEFAULT_TARIFF_SET, Collections.singletonList(basePrice), null);
+        priceService.doReplaceAll(DEFAULT_TARIFF_SET, Collections.singletonList(basePrice), may);
+
+        priceService.doReplaceAll(DEFAULT_TARIFF_SET, Collections.singletonList(newPrice), may);
+
+        assertThat(priceRepository.findAll()).extracting(Price::getMinuteRate).containsExactlyInAnyOrder(1.0, 2.0);
+        assertThat(priceService.getTariff(DEFAULT_TARIFF_SET).costInMicros(may.minusMinutes(1), may.plusMinutes(1)))
+                .isEqualTo(3_000_000L);
+
+        priceService.doReplaceAll(DEFAULT_TARIFF_SET, Collections.emptyList(), null);
+        assertThat(priceRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepPricesOfTariffSetsSeparate() {
+        PriceDto defaultPrice = new PriceDto();
+        defaultPrice.setMinuteRate(1.0);
+        PriceDto stationPrice = new PriceDto();
+        stationPrice.setMinuteRate(2.0);
+        priceService.doReplaceAll(DEFAULT_TARIFF_SET, Collections.singletonList(defaultPrice), null);
+        PriceDto created = priceService.doCreate("station-1", stationPrice);
+
+        priceService.doReplaceAll(DEFAULT_TARIFF_SET, Collections.emptyList(), null);
+        priceService.doDelete(DEFAULT_TARIFF_SET, created.getId());
+
+        assertThat(priceService.findAll("station-1")).extracting(PriceDto::getMinuteRate).containsExactly(2.0);
+        assertThat(priceRepository.findByTariffSet("station-1")).hasSize(1);
+
+        priceService.doDelete("station-1", created.getId());
+        assertThat(priceRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    public void shouldStoreDaysAndDatesOfPrices() {
+        PriceDto basicPrice = new PriceDto();
+        basicPrice.setMinuteRate(1.0);
+        PriceDto weekendPrice = new PriceDto();
+        weekendPrice.setMinuteRate(0.5);
+        weekendPrice.setStartHour(LocalTime.of(0, 0));
+        weekendPrice.setEndHour(LocalTime.of(0, 0));
+        weekendPrice.setDays(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+        PriceDto holidayPrice = new PriceDto();
+        holidayPrice.setMinuteRate(0.25);
+        holidayPrice.setStartHour(LocalTime.of(0, 0));
+        holidayPrice.setEndHour(LocalTime.of(0, 0));
+        holidayPrice.setDate(LocalDate.of(2019, Month.DECEMBER, 25));
+        priceService.doReplaceAll(DEFAULT_TARIFF_SET, Arrays.asList(basicPrice, weekendPrice, holidayPrice), null);
+
+        assertThat(priceRepository.findByTariffSet(DEFAULT_TARIFF_SET))
+                .extracting(Price::getDays, Price::getDate)
+                .containsExactlyInAnyOrder(
+                        tuple(null, null),
+                        tuple(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY), null),
+                        tuple(null, LocalDate.of(2019, Month.DECEMBER, 25)));
+        LocalDateTime monday = LocalDateTime.of(2019, Month.DECEMBER, 23, 0, 0);
+        assertThat(priceService.getTariff(DEFAULT_TARIFF_SET).costInMicros(monday.minusDays(2), monday.plusDays(3)))
+                .isEqualTo((2 * 720 + 2 * 1440 + 360) * 1_000_000L);
+
+        priceService.doReplaceAll(DEFAULT_TARIFF_SET, Collections.emptyList(), null);
+    }
+
+    @Test
+    public void shouldRejectConcurrentlyCreatedOverlappingPrices() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<PriceDto>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            PriceDto priceDto = new PriceDto();
+            priceDto.setMinuteRate(1.0);
+            priceDto.setStartHour(LocalTime.of(1, i));
+            priceDto.setEndHour(LocalTime.of(2, i));
+            results.add(executor.submit(() -> priceService.doCreate(DEFAULT_TARIFF_SET, priceDto)));
+        }
+        executor.shutdown();
+
+        List<PriceDto> created = new ArrayList<>();
+        int rejected = 0;
+        for (Future<PriceDto> result : results) {
+            try {
+                created.add(result.get());
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(PriceException.class);
+                rejected++;
+            }
+        }
+
+        assertThat(created).hasSize(1);
+        assertThat(rejected).isEqualTo(7);
+        assertThat(priceRepository.findAll()).hasSize(1);
+        assertThat(priceService.findAll(DEFAULT_TARIFF_SET)).hasSize(1);
+
+        priceService.doDelete(DEFAULT_TARIFF_SET, created.get(0).getId());
+    }
+
+    @Test
+    public void shouldPropagatePriceModificationsFromOtherInstance() throws Exception {
+        Server server = Server.createTcpServer("-tcpPort", "0").start();
+        try (ConfigurableApplicationContext otherInstance = new SpringApplicationBuilder(ECarApplication.class)
+                .run("--server.port=0", "--spring.jmx.enabled=false", "--spring.jpa.hibernate.ddl-auto=none",
+                        "--spring.datasource.url=jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:db",
+                        "--customers=false", "--tariff.polling.interval=100")) {
+            PriceService otherPriceService = otherInstance.getBean(PriceService.class);
+            priceService.getSnapshot(DEFAULT_TARIFF_SET);
+            PriceDto priceDto = new PriceDto();
+            priceDto.setMinuteRate(0.25);
+            priceDto.setStartHour(LocalTime.of(3, 0));
+            priceDto.setEndHour(LocalTime.of(4, 0));
+
+            PriceDto created = otherPriceService.doCreate(DEFAULT_TARIFF_SET, priceDto);
+
+            assertThat(awaitPriceCount(1)).isTrue();
+            assertThat(priceService.findAll(DEFAULT_TARIFF_SET))
+                    .extracting(PriceDto::getMinuteRate)
+                    .containsExactly(0.25);
+
+            otherPriceService.doDelete(DEFAULT_TARIFF_SET, created.getId());
+
+            assertThat(awaitPriceCount(0)).isTrue();
+        } finally {
+            server.stop();
+        }
+    }
+
+    private boolean awaitPriceCount(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (priceService.findAll(DEFAULT_TARIFF_SET).size() != count) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
     }
 
 }
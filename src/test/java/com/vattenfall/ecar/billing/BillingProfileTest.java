@@ -0,0 +1,40 @@
+package com.vattenfall.ecar.billing;
+
+import com.vattenfall.ecar.ECarApplication;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BillingProfileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldPriceProcessesOfCustomersLoadedOnStartup() throws Exception {
+        File input = folder.newFile("sessions.csv");
+        File output = folder.newFile("priced.csv");
+        Files.write(input.toPath(), Arrays.asList(
+                "1,20190329T2040,20190330T0630",
+                "99,20190329T2040,20190330T0630"));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ECarApplication.class)
+                .profiles("test", "billing")
+                .run("--billing.input=" + input.getPath(), "--billing.output=" + output.getPath(),
+                        "--spring.jmx.enabled=false", "--spring.datasource.url=jdbc:h2:mem:billing")) {
+            assertThat(context.isActive()).isTrue();
+        }
+
+        assertThat(Files.readAllLines(output.toPath())).containsExactly(
+                "1,20190329T2040,20190330T0630,,\"Basic price is missing\"",
+                "99,20190329T2040,20190330T0630,,\"Customer with id 99 does not exist\"");
+    }
+}
@@ -0,0 +1,99 @@
+package com.vattenfall.ecar.billing;
+
+import com.vattenfall.ecar.dto.CalculationRequestDto;
+import com.vattenfall.ecar.dto.CalculationResultDto;
+import com.vattenfall.ecar.service.Calculator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BillingRunnerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private Calculator calculator;
+
+    @InjectMocks
+    private BillingRunner runner;
+
+    private File input;
+    private File output;
+
+    @Before
+    public void init() throws Exception {
+        input = folder.newFile("sessions.csv");
+        output = folder.newFile("priced.csv");
+        ReflectionTestUtils.setField(runner, "inputLocation", input.getPath());
+        ReflectionTestUtils.setField(runner, "outputLocation", output.getPath());
+        ReflectionTestUtils.setField(runner, "chunkSize", 3);
+        ReflectionTestUtils.setField(runner, "sliceSize", 1);
+        doAnswer(invocation -> {
+            List<CalculationRequestDto> requests = invocation.getArgument(0);
+            return requests.stream().map(request -> {
+                CalculationResultDto result = new CalculationResultDto();
+                if (request.getCustomerId() == 4) {
+                    result.setError("Tariff set \"old\" is unknown");
+                } else if (request.getCustomerId() > 2) {
+                    result.setError("Customer with id " + request.getCustomerId() + " does not exist");
+                } else {
+                    result.setTotal(request.getCustomerId() * 10.5);
+                }
+                return result;
+            }).collect(Collectors.toList());
+        }).when(calculator).calculateAll(anyList());
+    }
+
+    @Test
+    public void shouldPriceAllLinesInOrder() throws Exception {
+        Files.write(input.toPath(), Arrays.asList(
+                "# customerId,start,end",
+                "1,20190329T2040,20190330T0630",
+                "",
+                "2,20190329T2040,20190330T0630",
+                "3,20190329T2040,20190330T0630",
+                "1,20190329T2040",
+                "2,20190329T2040,20190330T0630"));
+
+        runner.run();
+
+        assertThat(Files.readAllLines(output.toPath())).containsExactly(
+                "1,20190329T2040,20190330T0630,10.5,",
+                "2,20190329T2040,20190330T0630,21.0,",
+                "3,20190329T2040,20190330T0630,,\"Customer with id 3 does not exist\"",
+                "1,20190329T2040,,\"Invalid line\"",
+                "2,20190329T2040,20190330T0630,21.0,");
+        verify(calculator, atLeast(2)).calculateAll(anyList());
+    }
+
+    @Test
+    public void shouldEscapeQuotesInErrors() throws Exception {
+        Files.write(input.toPath(), Collections.singletonList("4,20190329T2040,20190330T0630"));
+
+        runner.run();
+
+        assertThat(Files.readAllLines(output.toPath()))
+                .containsExactly("4,20190329T2040,20190330T0630,,\"Tariff set \"\"old\"\" is unknown\"");
+    }
+}
@@ -0,0 +1,72 @@
+package com.vattenfall.ecar.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.junit.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class CacheConfigTest {
+
+    private CacheConfig config = new CacheConfig();
+
+    @SuppressWarnings("unchecked")
+    private CacheManager createCacheManager(CacheSpecs specs, NamedCacheLoader... loaders) {
+        ObjectProvider<NamedCacheLoader> provider = mock(ObjectProvider.class);
+        doReturn(Stream.of(loaders)).when(provider).stream();
+        CacheManager cacheManager = config.cacheManager(specs, provider);
+        ((SimpleCacheManager) cacheManager).afterPropertiesSet();
+        return cacheManager;
+    }
+
+    private Cache<Object, Object> getNativeCache(CacheManager cacheManager, String name) {
+        return ((CaffeineCache) cacheManager.getCache(name)).getNativeCache();
+    }
+
+    @Test
+    public void shouldCreateBoundedCacheWithStatisticsFromSpecification() {
+        CacheSpecs specs = new CacheSpecs();
+        specs.getSpecs().put("results", "maximumSize=10,expireAfterWrite=1m,recordStats");
+
+        CacheManager cacheManager = createCacheManager(specs);
+        cacheManager.getCache("results").put(1, "one");
+        cacheManager.getCache("results").get(1);
+        cacheManager.getCache("results").get(2);
+
+        Cache<Object, Object> cache = getNativeCache(cacheManager, "results");
+        assertThat(cacheManager.getCacheNames()).containsExactly("results");
+        assertThat(cache.policy().eviction().get().getMaximum()).isEqualTo(10);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCreateLoadingCacheWhenLoaderIsPresent() {
+        CacheSpecs specs = new CacheSpecs();
+        specs.getSpecs().put("squares", "maximumSize=10,refreshAfterWrite=1m");
+        NamedCacheLoader loader = new NamedCacheLoader() {
+            @Override
+            public String getCacheName() {
+                return "squares";
+            }
+
+            @Override
+            public Object load(Object key) {
+                return (Integer) key * (Integer) key;
+            }
+        };
+
+        CacheManager cacheManager = createCacheManager(specs, loader);
+
+        assertThat(getNativeCache(cacheManager, "squares")).isInstanceOf(LoadingCache.class);
+        assertThat(cacheManager.getCache("squares").get(3).get()).isEqualTo(9);
+    }
+}
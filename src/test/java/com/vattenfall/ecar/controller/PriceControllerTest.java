@@ -1,23 +1,44 @@
 package com.vattenfall.ecar.controller;
 
+import com.vattenfall.ecar.dto.CalculationResultDto;
 import com.vattenfall.ecar.dto.PriceDto;
+import com.vattenfall.ecar.dto.PricePageDto;
+import com.vattenfall.ecar.exception.NoSuchCustomerException;
 import com.vattenfall.ecar.exception.NoSuchPriceException;
 import com.vattenfall.ecar.exception.PriceException;
 import com.vattenfall.ecar.service.Calculator;
 import com.vattenfall.ecar.service.PriceService;
+import com.vattenfall.ecar.service.TariffSnapshot;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.servlet.error.ErrorAttributes;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executor;
 
+import static com.vattenfall.ecar.model.Price.DEFAULT_TARIFF_SET;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -35,6 +56,12 @@ public class PriceControllerTest {
     @MockBean
     private PriceService priceService;
 
+    @MockBean(name = "calculationExecutor")
+    private Executor calculationExecutor;
+
+    @Autowired
+    private ErrorAttributes errorAttributes;
+
     @Test
     public void shouldRejectGetRequestWithInvalidDateRange() throws Exception {
         mvc.perform(get("/prices")
@@ -50,16 +77,138 @@ public class PriceControllerTest {
     public void shouldAcceptValidGetRequest() throws Exception {
         LocalDateTime start = LocalDateTime.of(2019, Month.MARCH, 29, 20, 40);
         LocalDateTime end = LocalDateTime.of(2019, Month.MARCH, 30, 6, 30);
-        doReturn(12.34).when(calculator).calculate(1L, start, end);
+        doReturn(12.34).when(calculator).calculate(DEFAULT_TARIFF_SET, 1L, start, end);
+
+        mvc.perform(get("/prices")
+                .param("customer-id", "1")
+                .param("start", "20190329T2040")
+                .param("end", "20190330T0630"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value("12.34"));
+    }
+
+    @Test
+    public void shouldReturnPageOfPricesWithEntityTag() throws Exception {
+        TariffSnapshot snapshot = mock(TariffSnapshot.class);
+        doReturn("abc-7").when(snapshot).getTag();
+        doReturn(snapshot).when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+        PricePageDto page = new PricePageDto();
+        page.setPrices(Collections.singletonList(new PriceDto()));
+        page.setPage(1);
+        page.setSize(10);
+        page.setTotal(11);
+        doReturn(page).when(priceService).findPage(snapshot, 1, 10);
+
+        mvc.perform(get("/prices")
+                .param("page", "1")
+                .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc-7-1-10\""))
+                .andExpect(jsonPath("$.prices").isArray())
+                .andExpect(jsonPath("$.total").value(11));
+    }
+
+    @Test
+    public void shouldAnswerNotModifiedWhenEntityTagMatches() throws Exception {
+        TariffSnapshot snapshot = mock(TariffSnapshot.class);
+        doReturn("abc-7").when(snapshot).getTag();
+        doReturn(snapshot).when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        mvc.perform(get("/prices")
+                .header("If-None-Match", "\"abc-7-0-100\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(priceService, never()).findPage(any(), anyInt(), anyInt());
+    }
 
+    @Test
+    public void shouldRejectTooLargePage() throws Exception {
         mvc.perform(get("/prices")
+                .param("size", "100000"))
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(priceService);
+    }
+
+    @Test
+    public void shouldCalculatePriceAsynchronously() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2019, Month.MARCH, 29, 20, 40);
+        LocalDateTime end = LocalDateTime.of(2019, Month.MARCH, 30, 6, 30);
+        doReturn(12.34).when(calculator).calculate(DEFAULT_TARIFF_SET, 1L, start, end);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(calculationExecutor).execute(isA(Runnable.class));
+
+        MvcResult result = mvc.perform(get("/prices/async")
                 .param("customer-id", "1")
                 .param("start", "20190329T2040")
                 .param("end", "20190330T0630"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.total").value("12.34"));
     }
 
+    @Test
+    public void shouldReportFailureOfAsynchronousCalculation() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2019, Month.MARCH, 29, 20, 40);
+        LocalDateTime end = LocalDateTime.of(2019, Month.MARCH, 30, 6, 30);
+        doThrow(new NoSuchCustomerException(999L)).when(calculator).calculate(DEFAULT_TARIFF_SET, 999L, start, end);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(calculationExecutor).execute(isA(Runnable.class));
+
+        MvcResult result = mvc.perform(get("/prices/async")
+                .param("customer-id", "999")
+                .param("start", "20190329T2040")
+                .param("end", "20190330T0630"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult failure = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound())
+                .andReturn();
+        assertThat(errorAttributes.getErrorAttributes(new ServletWebRequest(failure.getRequest()), false))
+                .containsEntry("message", "Customer with id 999 does not exist");
+    }
+
+    @Test
+    public void shouldRejectAsynchronousCalculationWhenExecutorIsSaturated() throws Exception {
+        doThrow(TaskRejectedException.class).when(calculationExecutor).execute(isA(Runnable.class));
+
+        mvc.perform(get("/prices/async")
+                .param("customer-id", "1")
+                .param("start", "20190329T2040")
+                .param("end", "20190330T0630"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+
+        verifyZeroInteractions(calculator);
+    }
+
+    @Test
+    public void shouldReturnResultsOfBatchCalculation() throws Exception {
+        CalculationResultDto success = new CalculationResultDto();
+        success.setTotal(12.34);
+        CalculationResultDto failure = new CalculationResultDto();
+        failure.setError("Customer with id 2 does not exist");
+        doReturn(Arrays.asList(success, failure)).when(calculator).calculateAll(anyList());
+
+        mvc.perform(post("/prices/calculations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"customerId\":1,\"start\":\"20190329T2040\",\"end\":\"20190330T0630\"}," +
+                        "{\"customerId\":2,\"start\":\"20190329T2040\",\"end\":\"20190330T0630\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].total").value("12.34"))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].error").value("Customer with id 2 does not exist"));
+    }
+
     @Test
     public void shouldRejectPostRequestWithId() throws Exception {
         mvc.perform(post("/prices")
@@ -69,11 +218,34 @@ public class PriceControllerTest {
                 .andExpect(status().reason("Use PATCH method for update"));
     }
 
+    @Test
+    public void shouldRejectBasicPriceLimitedToDays() throws Exception {
+        mvc.perform(post("/prices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"minuteRate\":1.2,\"days\":[\"SATURDAY\",\"SUNDAY\"]}"))
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(priceService);
+    }
+
+    @Test
+    public void shouldAcceptSpecialPriceOfDate() throws Exception {
+        PriceDto priceDto = new PriceDto();
+        priceDto.setId(1);
+        doReturn(priceDto).when(priceService).doCreate(eq(DEFAULT_TARIFF_SET),
+                argThat(price -> LocalDate.of(2019, Month.DECEMBER, 25).equals(price.getDate())));
+
+        mvc.perform(post("/prices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"minuteRate\":0.1,\"startHour\":\"00:00\",\"endHour\":\"00:00\",\"date\":\"20191225\"}"))
+                .andExpect(status().isCreated());
+    }
+
     @Test
     public void shouldAcceptCorrectPostRequestAndSetLocationHeader() throws Exception {
         PriceDto priceDto = new PriceDto();
         priceDto.setId(1);
-        doReturn(priceDto).when(priceService).doCreate(isA(PriceDto.class));
+        doReturn(priceDto).when(priceService).doCreate(eq(DEFAULT_TARIFF_SET), isA(PriceDto.class));
 
         mvc.perform(post("/prices")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -82,6 +254,42 @@ public class PriceControllerTest {
                 .andExpect(header().string("Location", "/prices/1"));
     }
 
+    @Test
+    public void shouldCreatePriceInRequestedTariffSet() throws Exception {
+        PriceDto priceDto = new PriceDto();
+        priceDto.setId(1);
+        doReturn(priceDto).when(priceService).doCreate(eq("station-1"), isA(PriceDto.class));
+
+        mvc.perform(post("/prices?tariff-set=station-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"minuteRate\":1.2}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/prices/1?tariff-set=station-1"));
+    }
+
+    @Test
+    public void shouldRejectInvalidTariffSetName() throws Exception {
+        mvc.perform(get("/prices?tariff-set=a b"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("invalid tariff set name")));
+        verifyZeroInteractions(priceService);
+    }
+
+    @Test
+    public void shouldPassCalculationInInvalidTariffSetToCalculator() throws Exception {
+        CalculationResultDto result = new CalculationResultDto();
+        result.setError("Invalid tariff set name");
+        doReturn(Collections.singletonList(result)).when(calculator).calculateAll(anyList());
+
+        mvc.perform(post("/prices/calculations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"customerId\":1,\"start\":\"20190329T2040\",\"end\":\"20190330T0630\"," +
+                        "\"tariffSet\":\"../station\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].error").value("Invalid tariff set name"));
+        verify(calculator).calculateAll(argThat(requests -> "../station".equals(requests.get(0).getTariffSet())));
+    }
+
     @Test
     public void shouldRejectPostRequestWithNegativeRate() throws Exception {
         mvc.perform(post("/prices")
@@ -98,6 +306,64 @@ public class PriceControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void shouldReplaceAllPrices() throws Exception {
+        PriceDto priceDto = new PriceDto();
+        priceDto.setId(1);
+        priceDto.setMinuteRate(1.2);
+        doReturn(Collections.singletonList(priceDto))
+                .when(priceService).doReplaceAll(eq(DEFAULT_TARIFF_SET), anyList(), isNull());
+
+        mvc.perform(put("/prices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"minuteRate\":1.2},{\"minuteRate\":0.5,\"startHour\":\"22:00\",\"endHour\":\"06:00\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1));
+    }
+
+    @Test
+    public void shouldRejectMissingPriceInSchedule() throws Exception {
+        mvc.perform(put("/prices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"minuteRate\":1.2},null]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("must not be null"));
+        verifyZeroInteractions(priceService);
+    }
+
+    @Test
+    public void shouldReplaceTariffVersionEffectiveFromPassedDate() throws Exception {
+        mvc.perform(put("/prices")
+                .param("effective-from", "20190501T0000")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"minuteRate\":1.2}]"))
+                .andExpect(status().isOk());
+
+        verify(priceService)
+                .doReplaceAll(eq(DEFAULT_TARIFF_SET), anyList(), eq(LocalDateTime.of(2019, Month.MAY, 1, 0, 0)));
+    }
+
+    @Test
+    public void shouldRejectPutRequestWithInvalidPrice() throws Exception {
+        mvc.perform(put("/prices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"minuteRate\":1.2},{\"startHour\":\"22:00\",\"endHour\":\"06:00\"}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("minute rate is required"));
+
+        verifyZeroInteractions(priceService);
+    }
+
+    @Test
+    public void shouldRejectPutRequestWithId() throws Exception {
+        mvc.perform(put("/prices")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"id\":1,\"minuteRate\":1.2}]"))
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(priceService);
+    }
+
     @Test
     public void shouldRejectPatchRequestWithNegativeRate() throws Exception {
         mvc.perform(patch("/prices/1")
@@ -115,7 +381,7 @@ public class PriceControllerTest {
                 .content("{\"minuteRate\":2}"))
                 .andExpect(status().isOk());
 
-        verify(priceService).doUpdate(isA(PriceDto.class));
+        verify(priceService).doUpdate(eq(DEFAULT_TARIFF_SET), isA(PriceDto.class));
     }
 
     @Test
@@ -123,12 +389,12 @@ public class PriceControllerTest {
         mvc.perform(delete("/prices/2"))
                 .andExpect(status().isNoContent());
 
-        verify(priceService).doDelete(2);
+        verify(priceService).doDelete(DEFAULT_TARIFF_SET, 2);
     }
 
     @Test
     public void shouldHandleNoSuchPriceException() throws Exception {
-        doThrow(NoSuchPriceException.class).when(priceService).doUpdate(isA(PriceDto.class));
+        doThrow(NoSuchPriceException.class).when(priceService).doUpdate(eq(DEFAULT_TARIFF_SET), isA(PriceDto.class));
 
         mvc.perform(patch("/prices/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -138,7 +404,7 @@ public class PriceControllerTest {
 
     @Test
     public void shouldHandlePriceException() throws Exception {
-        doThrow(PriceException.class).when(priceService).doUpdate(isA(PriceDto.class));
+        doThrow(PriceException.class).when(priceService).doUpdate(eq(DEFAULT_TARIFF_SET), isA(PriceDto.class));
 
         mvc.perform(patch("/prices/1")
                 .contentType(MediaType.APPLICATION_JSON)
@@ -0,0 +1,83 @@
+package com.vattenfall.ecar.controller;
+
+import com.vattenfall.ecar.dto.ChargingWindowDto;
+import com.vattenfall.ecar.dto.PriceCurveDto;
+import com.vattenfall.ecar.service.QuoteService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.Arrays;
+
+import static com.vattenfall.ecar.model.Price.DEFAULT_TARIFF_SET;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = QuoteController.class)
+public class QuoteControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private QuoteService quoteService;
+
+    @Test
+    public void shouldReturnCheapestWindow() throws Exception {
+        LocalDateTime earliestStart = LocalDateTime.of(2019, Month.APRIL, 5, 18, 0);
+        LocalDateTime deadline = LocalDateTime.of(2019, Month.APRIL, 6, 7, 0);
+        ChargingWindowDto window = new ChargingWindowDto();
+        window.setStart(LocalDateTime.of(2019, Month.APRIL, 6, 2, 0));
+        window.setEnd(LocalDateTime.of(2019, Month.APRIL, 6, 4, 0));
+        window.setTotal(18.0);
+        doReturn(window).when(quoteService).findCheapestWindow(DEFAULT_TARIFF_SET, 1L, 120, earliestStart, deadline);
+
+        mvc.perform(get("/quotes/cheapest-window")
+                .param("customer-id", "1")
+                .param("duration", "120")
+                .param("earliest-start", "20190405T1800")
+                .param("deadline", "20190406T0700"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.start").value("20190406T0200"))
+                .andExpect(jsonPath("$.end").value("20190406T0400"))
+                .andExpect(jsonPath("$.total").value(18.0));
+    }
+
+    @Test
+    public void shouldRejectWindowNotFittingBeforeDeadline() throws Exception {
+        mvc.perform(get("/quotes/cheapest-window")
+                .param("duration", "120")
+                .param("earliest-start", "20190405T1800")
+                .param("deadline", "20190405T1900"))
+                .andExpect(status().isBadRequest());
+
+        verifyZeroInteractions(quoteService);
+    }
+
+    @Test
+    public void shouldReturnPriceCurve() throws Exception {
+        PriceCurveDto curve = new PriceCurveDto();
+        curve.setDuration(60);
+        curve.setTotals(Arrays.asList(6.0, null));
+        doReturn(curve)
+                .when(quoteService).findPriceCurve(DEFAULT_TARIFF_SET, null, 60, LocalDateTime.of(2019, Month.APRIL, 5, 18, 0));
+
+        mvc.perform(get("/quotes/price-curve")
+                .param("duration", "60")
+                .param("at", "20190405T1800"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.duration").value(60))
+                .andExpect(jsonPath("$.totals[0]").value(6.0))
+                .andExpect(jsonPath("$.totals[1]").isEmpty());
+    }
+}
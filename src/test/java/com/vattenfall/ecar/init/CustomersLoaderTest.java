@@ -0,0 +1,86 @@
+package com.vattenfall.ecar.init;
+
+import com.vattenfall.ecar.repository.CustomerRepository;
+import com.vattenfall.ecar.service.CustomerIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class CustomersLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private CustomerIndex customerIndex;
+    private CustomersLoader loader;
+    private File input;
+
+    @Before
+    public void init() throws Exception {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table customer (id bigint not null primary key, vip boolean)");
+        customerIndex = new CustomerIndex(Mockito.mock(CustomerRepository.class), new ConcurrentMapCacheManager());
+        loader = new CustomersLoader(jdbcTemplate, customerIndex, new SimpleMeterRegistry());
+        input = folder.newFile("customers.json");
+        ReflectionTestUtils.setField(loader, "fileLocation", input.toURI().toString());
+        ReflectionTestUtils.setField(loader, "batchSize", 2);
+        ReflectionTestUtils.setField(loader, "progressInterval", 100);
+    }
+
+    @After
+    public void shutdown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void shouldOverwriteCustomersRepeatedInFile() throws Exception {
+        write("[{\"id\": 1, \"vip\": true}, {\"id\": 2, \"vip\": false}, {\"id\": 1, \"vip\": false}]");
+
+        loader.run();
+
+        assertThat(jdbcTemplate.queryForList("select id, vip from customer order by id"))
+                .extracting(row -> row.get("ID"), row -> row.get("VIP"))
+                .containsExactly(tuple(1L, false), tuple(2L, false));
+        assertThat(customerIndex.getVip(1L)).isFalse();
+    }
+
+    @Test
+    public void shouldLoadAgainIntoPopulatedDatabase() throws Exception {
+        write("[{\"id\": 1, \"vip\": true}, {\"id\": 2, \"vip\": null}, {\"id\": 3}]");
+        loader.run();
+        write("[{\"id\": 1, \"vip\": false}, {\"id\": 4, \"vip\": true}]");
+
+        loader.run();
+
+        assertThat(jdbcTemplate.queryForList("select id, vip from customer order by id"))
+                .extracting(row -> row.get("ID"), row -> row.get("VIP"))
+                .containsExactly(tuple(1L, false), tuple(2L, null), tuple(3L, null), tuple(4L, true));
+        assertThat(customerIndex.getVip(1L)).isFalse();
+        assertThat(customerIndex.getVip(2L)).isFalse();
+        assertThat(customerIndex.getVip(4L)).isTrue();
+    }
+
+    private void write(String json) throws Exception {
+        Files.write(input.toPath(), Collections.singletonList(json));
+    }
+}
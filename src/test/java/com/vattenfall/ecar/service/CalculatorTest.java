@@ -1,38 +1,57 @@
 package com.vattenfall.ecar.service;
 
+import com.vattenfall.ecar.dto.CalculationRequestDto;
+import com.vattenfall.ecar.dto.CalculationResultDto;
 import com.vattenfall.ecar.exception.NoSuchCustomerException;
 import com.vattenfall.ecar.exception.NotEnoughDataException;
-import com.vattenfall.ecar.model.Customer;
 import com.vattenfall.ecar.model.Price;
 import com.vattenfall.ecar.model.RateType;
-import com.vattenfall.ecar.repository.CustomerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Month;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
 
+import static com.vattenfall.ecar.model.Price.DEFAULT_TARIFF_SET;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CalculatorTest {
 
     @Mock
-    private CustomerRepository customerRepository;
+    private CustomerIndex customerIndex;
 
     @Mock
     private PriceService priceService;
 
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager("results");
+
     @InjectMocks
     private Calculator calculator;
 
@@ -41,24 +60,29 @@ public class CalculatorTest {
 
     @Before
     public void init() {
-        Customer customer = new Customer();
-        customer.setVip(false);
-        doReturn(Optional.of(customer)).when(customerRepository).findById(1L);
+        doReturn(false).when(customerIndex).findVip(1L);
         calculator.setVipDiscount("10%");
     }
 
     @Test
     public void shouldThrowExceptionWhenCustomerIsMissing() {
+        doReturn(null).when(customerIndex).findVip(-1L);
+
         assertThatExceptionOfType(NoSuchCustomerException.class)
-                .isThrownBy(() -> calculator.calculate(-1L, start, end))
+                .isThrownBy(() -> calculator.calculate(DEFAULT_TARIFF_SET, -1L, start, end))
                 .withMessage("Customer with id -1 does not exist");
     }
 
     @Test
     public void shouldThrowExceptionWhenDataIsMissing() {
+        doReturn(TariffSnapshot.of(1, Collections.emptyList())).when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
         assertThatExceptionOfType(NotEnoughDataException.class)
-                .isThrownBy(() -> calculator.calculate(1L, start, end))
+                .isThrownBy(() -> calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end))
                 .withMessage("Basic price is missing");
+        assertThat(meterRegistry.get("ecar.rejections").tag("exception", "NotEnoughDataException").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("ecar.calculation").timer().count()).isEqualTo(1);
     }
 
     @Test
@@ -66,9 +90,10 @@ public class CalculatorTest {
         Price price = new Price();
         price.setMinuteRate(0.1);
         price.setRateType(RateType.BASIC);
-        doReturn(Collections.singletonList(price)).when(priceService).findAll();
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(price)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
 
-        assertThat(calculator.calculate(1L, start, end)).isEqualTo(60.0);
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end)).isEqualTo(60.0);
     }
 
     @Test
@@ -82,9 +107,10 @@ public class CalculatorTest {
         special.setStartHour(LocalTime.of(15, 0));
         special.setEndHour(LocalTime.of(22, 0));
 
-        doReturn(Arrays.asList(basic, special)).when(priceService).findAll();
+        doReturn(TariffSnapshot.of(1, Arrays.asList(basic, special)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
 
-        assertThat(calculator.calculate(1L, start, end)).isEqualTo(54.0);
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end)).isEqualTo(54.0);
     }
 
     @Test
@@ -98,22 +124,175 @@ public class CalculatorTest {
         special.setStartHour(LocalTime.of(22, 0));
         special.setEndHour(LocalTime.of(2, 0));
 
-        doReturn(Arrays.asList(basic, special)).when(priceService).findAll();
+        doReturn(TariffSnapshot.of(1, Arrays.asList(basic, special)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
 
-        assertThat(calculator.calculate(1L, start.minusDays(1), end)).isEqualTo(384.0);
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start.minusDays(1), end)).isEqualTo(384.0);
     }
 
     @Test
     public void shouldCalculateWithDiscount() {
-        Customer customer = new Customer();
-        customer.setVip(true);
-        doReturn(Optional.of(customer)).when(customerRepository).findById(1L);
+        doReturn(true).when(customerIndex).findVip(1L);
 
         Price price = new Price();
         price.setMinuteRate(0.24);
         price.setRateType(RateType.BASIC);
-        doReturn(Collections.singletonList(price)).when(priceService).findAll();
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(price)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end)).isEqualTo(129.6);
+    }
+
+    @Test
+    public void shouldRoundOnceWithConfiguredRoundingMode() {
+        Price price = new Price();
+        price.setMinuteRate(0.000125);
+        price.setRateType(RateType.BASIC);
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(price)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+        LocalDateTime end = start.plusMinutes(100);
+
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end)).isEqualTo(0.01);
+
+        calculator.setRoundingMode(RoundingMode.HALF_EVEN);
+
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end)).isEqualTo(0.01);
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end.plusMinutes(100))).isEqualTo(0.02);
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end.plusMinutes(200))).isEqualTo(0.04);
+    }
+
+    @Test
+    public void shouldSumManyMinutesExactly() {
+        Price price = new Price();
+        price.setMinuteRate(0.07);
+        price.setRateType(RateType.BASIC);
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(price)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, start.plusDays(1000))).isEqualTo(100800.0);
+    }
+
+    @Test
+    public void shouldCalculateBatchAndReportErrorsPerItem() {
+        doReturn(false).when(customerIndex).getVip(1L);
+        doReturn(true).when(customerIndex).getVip(2L);
+        doReturn(null).when(customerIndex).getVip(3L);
+
+        Price price = new Price();
+        price.setMinuteRate(0.24);
+        price.setRateType(RateType.BASIC);
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(price)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        List<CalculationResultDto> results = calculator.calculateAll(Arrays.asList(
+                createRequest(1L, start, end),
+                createRequest(3L, start, end),
+                createRequest(2L, end, start),
+                createRequest(2L, start, end)));
+
+        assertThat(results)
+                .extracting(CalculationResultDto::getTotal, CalculationResultDto::getError)
+                .containsExactly(
+                        tuple(144.0, null),
+                        tuple(null, "Customer with id 3 does not exist"),
+                        tuple(null, "Start date has to be before end date"),
+                        tuple(129.6, null));
+        verify(customerIndex).load(anyCollection());
+        verify(customerIndex, never()).findVip(anyLong());
+    }
+
+    @Test
+    public void shouldReportMissingProcessInBatch() {
+        doReturn(false).when(customerIndex).getVip(1L);
+        Price price = new Price();
+        price.setMinuteRate(0.24);
+        price.setRateType(RateType.BASIC);
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(price)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        List<CalculationResultDto> results = calculator.calculateAll(Arrays.asList(
+                null,
+                createRequest(1L, start, end)));
+
+        assertThat(results)
+                .extracting(CalculationResultDto::getTotal, CalculationResultDto::getError)
+                .containsExactly(
+                        tuple(null, "Charging process is required"),
+                        tuple(144.0, null));
+    }
+
+    @Test
+    public void shouldReportInvalidTariffSetPerItem() {
+        doReturn(false).when(customerIndex).getVip(1L);
+        Price price = new Price();
+        price.setMinuteRate(0.24);
+        price.setRateType(RateType.BASIC);
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(price)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+        CalculationRequestDto invalid = createRequest(1L, start, end);
+        invalid.setTariffSet("../station");
+
+        List<CalculationResultDto> results = calculator.calculateAll(Arrays.asList(
+                invalid,
+                createRequest(1L, start, end)));
+
+        assertThat(results)
+                .extracting(CalculationResultDto::getTotal, CalculationResultDto::getError)
+                .containsExactly(
+                        tuple(null, "Invalid tariff set name"),
+                        tuple(144.0, null));
+        verify(priceService, never()).getSnapshot("../station");
+    }
+
+    @Test
+    public void shouldCacheResultsOfProcessesWithTheSameShape() {
+        Price price = new Price();
+        price.setMinuteRate(0.2);
+        price.setRateType(RateType.BASIC);
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(price)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end)).isEqualTo(120.0);
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start.plusDays(3), end.plusDays(3))).isEqualTo(120.0);
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end.plusMinutes(1))).isEqualTo(120.2);
+
+        assertThat(getCachedResults()).hasSize(2);
+
+        price.setMinuteRate(0.3);
+        doReturn(TariffSnapshot.of(2, Collections.singletonList(price)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end)).isEqualTo(180.0);
+        assertThat(getCachedResults()).hasSize(3);
+    }
+
+    @Test
+    public void shouldNotCacheResultsOfProcessesSpanningManyTariffVersions() {
+        Price oldPrice = new Price();
+        oldPrice.setMinuteRate(0.1);
+        oldPrice.setRateType(RateType.BASIC);
+        Price newPrice = new Price();
+        newPrice.setMinuteRate(0.2);
+        newPrice.setRateType(RateType.BASIC);
+        newPrice.setEffectiveFrom(start.plusHours(5));
+        doReturn(TariffSnapshot.of(1, Arrays.asList(oldPrice, newPrice)))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start, end)).isEqualTo(90.0);
+        assertThat(calculator.calculate(DEFAULT_TARIFF_SET, 1L, start.plusDays(1), end.plusDays(1))).isEqualTo(120.0);
+
+        assertThat(getCachedResults()).hasSize(1);
+    }
+
+    private Map<?, ?> getCachedResults() {
+        return (Map<?, ?>) cacheManager.getCache("results").getNativeCache();
+    }
 
-        assertThat(calculator.calculate(1L, start, end)).isEqualTo(129.6);
+    private CalculationRequestDto createRequest(Long customerId, LocalDateTime start, LocalDateTime end) {
+        CalculationRequestDto request = new CalculationRequestDto();
+        request.setCustomerId(customerId);
+        request.setStart(start);
+        request.setEnd(end);
+        return request;
     }
 }
@@ -0,0 +1,98 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.model.Customer;
+import com.vattenfall.ecar.repository.CustomerRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CustomerIndexTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager("customers");
+
+    @InjectMocks
+    private CustomerIndex index;
+
+    private Customer createCustomer(long id, boolean vip) {
+        Customer customer = new Customer();
+        customer.setId(id);
+        customer.setVip(vip);
+        return customer;
+    }
+
+    @Test
+    public void shouldReturnVipStatusOfIndexedCustomers() {
+        for (long id = 1; id <= 10_000; id++) {
+            index.put(createCustomer(id * 1024, id % 3 == 0));
+        }
+
+        assertThat(index.size()).isEqualTo(10_000);
+        assertThat(index.getVip(3 * 1024)).isTrue();
+        assertThat(index.getVip(4 * 1024)).isFalse();
+        assertThat(index.getVip(1)).isNull();
+        verifyZeroInteractions(customerRepository);
+    }
+
+    @Test
+    public void shouldUpdateCustomers() {
+        for (long id = 1; id <= 100; id++) {
+            index.put(createCustomer(id, false));
+        }
+        index.put(createCustomer(50, true));
+
+        assertThat(index.size()).isEqualTo(100);
+        assertThat(index.getVip(50)).isTrue();
+        assertThat(index.getVip(51)).isFalse();
+    }
+
+    @Test
+    public void shouldReadMissingCustomerThroughRepository() {
+        doReturn(Optional.of(createCustomer(7, true))).when(customerRepository).findById(7L);
+
+        assertThat(index.findVip(7)).isTrue();
+        assertThat(index.findVip(7)).isTrue();
+        assertThat(index.findVip(8)).isNull();
+        verify(customerRepository).findById(7L);
+    }
+
+    @Test
+    public void shouldRememberMissingCustomersUntilTheyAreSaved() {
+        assertThat(index.findVip(8)).isNull();
+        assertThat(index.findVip(8)).isNull();
+        verify(customerRepository).findById(8L);
+
+        index.put(createCustomer(8, true));
+
+        assertThat(index.findVip(8)).isTrue();
+        verify(customerRepository).findById(8L);
+    }
+
+    @Test
+    public void shouldLoadOnlyMissingCustomersInBulk() {
+        index.put(createCustomer(1, false));
+        doReturn(Collections.singletonList(createCustomer(2, true))).when(customerRepository)
+                .findAllById(Collections.singletonList(2L));
+
+        index.load(Arrays.asList(1L, 2L));
+
+        assertThat(index.getVip(2)).isTrue();
+        verify(customerRepository).findAllById(Collections.singletonList(2L));
+    }
+}
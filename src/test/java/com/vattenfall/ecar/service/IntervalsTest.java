@@ -65,6 +65,38 @@ public class IntervalsTest {
         assertThat(Intervals.intersectionInMinutes(dateTimeInterval, timeInterval)).isEqualTo(4 * 200);
     }
 
+    @Test
+    public void shouldCalculateIntersectionOfIntervalSpanningMonthsWithIntervalNonContainingMidnight() {
+        LocalDateTime start = LocalDateTime.of(2019, Month.JANUARY, 1, 10, 30);
+        LocalDateTime end = LocalDateTime.of(2019, Month.MARCH, 1, 12, 30);
+        DateTimeInterval dateTimeInterval = new DateTimeInterval(start, end);
+
+        TimeInterval timeInterval = new TimeInterval(LocalTime.of(12, 15), LocalTime.of(13, 0));
+
+        assertThat(Intervals.intersectionInMinutes(dateTimeInterval, timeInterval)).isEqualTo(59 * 45 + 15);
+    }
+
+    @Test
+    public void shouldCalculateIntersectionOfIntervalSpanningMonthsWithIntervalContainingMidnight() {
+        LocalDateTime start = LocalDateTime.of(2020, Month.FEBRUARY, 1, 23, 0);
+        LocalDateTime end = LocalDateTime.of(2020, Month.MAY, 1, 0, 30);
+        DateTimeInterval dateTimeInterval = new DateTimeInterval(start, end);
+
+        TimeInterval timeInterval = new TimeInterval(LocalTime.of(22, 0), LocalTime.of(1, 20));
+
+        assertThat(Intervals.intersectionInMinutes(dateTimeInterval, timeInterval)).isEqualTo(89 * 200 + 60 + 30);
+    }
+
+    @Test
+    public void shouldCalculateIntersectionOfYearLongIntervalEndingAtTheSameTimeOfDay() {
+        LocalDateTime start = LocalDateTime.of(2019, Month.JUNE, 15, 8, 0);
+        DateTimeInterval dateTimeInterval = new DateTimeInterval(start, start.plusYears(1));
+
+        TimeInterval timeInterval = new TimeInterval(LocalTime.of(7, 0), LocalTime.of(9, 0));
+
+        assertThat(Intervals.intersectionInMinutes(dateTimeInterval, timeInterval)).isEqualTo(366 * 120);
+    }
+
     @Test
     public void shouldCalculateIntersectionOfTwoIntervalsContainingMidnight() {
         TimeInterval interval1 = new TimeInterval(LocalTime.of(22, 0), LocalTime.of(3, 15));
@@ -5,9 +5,14 @@ import com.vattenfall.ecar.model.Price;
 import com.vattenfall.ecar.model.RateType;
 import org.junit.Test;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.Month;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 
 import static java.util.Collections.singletonList;
@@ -21,7 +26,9 @@ public class OverlappingValidatorTest {
      * Tests for validate method
      */
     private Price createPrice(Integer id, LocalTime start, LocalTime end, RateType type) {
-        Price price = createPrice(start, end);
+        Price price = new Price();
+        price.setStartHour(start);
+        price.setEndHour(end);
         price.setId(id);
         price.setRateType(type);
         return price;
@@ -122,85 +129,144 @@ public class OverlappingValidatorTest {
                 .doesNotThrowAnyException();
     }
 
-    /*
-     * Tests for overlap method
-     */
-    private Price createPrice(LocalTime start, LocalTime end) {
-        Price price = new Price();
-        price.setStartHour(start);
-        price.setEndHour(end);
-        return price;
+    @Test
+    public void shouldNotModifyExistingPrices() {
+        Price basicPrice = createPrice(1, null, null, RateType.BASIC);
+        Price oldPrice = createPrice(2, LocalTime.of(1, 0), LocalTime.of(2, 0), RateType.SPECIAL);
+        Price newPrice = createPrice(2, LocalTime.of(2, 0), LocalTime.of(3, 0), RateType.SPECIAL);
+
+        List<Price> existingPrices = new ArrayList<>(Arrays.asList(basicPrice, oldPrice));
+        validator.validate(newPrice, existingPrices);
+
+        assertThat(existingPrices).containsExactly(basicPrice, oldPrice);
     }
 
     @Test
-    public void shouldNotOverlapWhenPeriodsAreDisjoint() {
-        Price price1 = createPrice(LocalTime.of(2, 30), LocalTime.of(3, 45));
-        Price price2 = createPrice(LocalTime.of(12, 30), LocalTime.of(13, 45));
+    public void shouldNameConflictingPriceAmongManyPrices() {
+        List<Price> existingPrices = new ArrayList<>();
+        for (int hour = 0; hour < 23; hour++) {
+            existingPrices.add(createPrice(hour, LocalTime.of(hour, 0), LocalTime.of(hour, 30), RateType.SPECIAL));
+        }
+        Price newPrice = createPrice(null, LocalTime.of(23, 0), LocalTime.of(0, 30), RateType.SPECIAL);
 
-        assertThat(validator.overlap(price1, price2)).isFalse();
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> validator.validate(newPrice, existingPrices))
+                .withMessage("Price causing violations: " + existingPrices.get(0));
     }
 
     @Test
-    public void shouldNotOverlapWhenPeriodsIntersectInOnePoint() {
-        Price price1 = createPrice(LocalTime.of(2, 30), LocalTime.of(3, 45));
-        Price price2 = createPrice(LocalTime.of(3, 45), LocalTime.of(13, 45));
+    public void shouldBeForbiddenToAddSpecialPriceWithinPeriodContainingMidnight() {
+        Price oldPrice = createPrice(1, LocalTime.of(22, 0), LocalTime.of(6, 0), RateType.SPECIAL);
+        Price newPrice = createPrice(null, LocalTime.of(3, 0), LocalTime.of(4, 0), RateType.SPECIAL);
+
+        List<Price> existingPrices = new ArrayList<>(singletonList(oldPrice));
 
-        assertThat(validator.overlap(price1, price2)).isFalse();
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> validator.validate(newPrice, existingPrices))
+                .withMessage("Price causing violations: " + oldPrice);
     }
 
     @Test
-    public void shouldOverlapWhenPeriodsIntersectNonTrivially() {
-        Price price1 = createPrice(LocalTime.of(2, 30), LocalTime.of(3, 45));
-        Price price2 = createPrice(LocalTime.of(3, 30), LocalTime.of(13, 45));
-
-        assertThat(validator.overlap(price1, price2)).isTrue();
+    public void shouldAcceptDisjointSchedule() {
+        List<Price> prices = Arrays.asList(
+                createPrice(null, null, null, RateType.BASIC),
+                createPrice(null, LocalTime.of(22, 0), LocalTime.of(6, 0), RateType.SPECIAL),
+                createPrice(null, LocalTime.of(6, 0), LocalTime.of(8, 0), RateType.SPECIAL),
+                createPrice(null, LocalTime.of(12, 0), LocalTime.of(13, 0), RateType.SPECIAL));
+
+        assertThatCode(() -> validator.validateAll(prices))
+                .doesNotThrowAnyException();
     }
 
     @Test
-    public void shouldOverlapWhenPeriodsIntersectNonTriviallyAndEndIsBeforeStart1() {
-        Price price1 = createPrice(LocalTime.of(12, 30), LocalTime.of(3, 45));
-        Price price2 = createPrice(LocalTime.of(3, 30), LocalTime.of(10, 45));
+    public void shouldRejectScheduleWithTwoBasicPrices() {
+        List<Price> prices = Arrays.asList(
+                createPrice(null, null, null, RateType.BASIC),
+                createPrice(null, null, null, RateType.BASIC));
 
-        assertThat(validator.overlap(price1, price2)).isTrue();
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> validator.validateAll(prices))
+                .withMessage("Two basic prices are not allowed.");
     }
 
     @Test
-    public void shouldOverlapWhenPeriodsIntersectNonTriviallyAndEndIsBeforeStart2() {
-        Price price1 = createPrice(LocalTime.of(2, 30), LocalTime.of(3, 45));
-        Price price2 = createPrice(LocalTime.of(3, 30), LocalTime.of(3, 15));
+    public void shouldRejectScheduleWithOverlappingPeriods() {
+        Price nightPrice = createPrice(null, LocalTime.of(22, 0), LocalTime.of(6, 0), RateType.SPECIAL);
+        Price morningPrice = createPrice(null, LocalTime.of(8, 0), LocalTime.of(9, 0), RateType.SPECIAL);
+        Price earlyPrice = createPrice(null, LocalTime.of(1, 0), LocalTime.of(2, 0), RateType.SPECIAL);
+        List<Price> prices = Arrays.asList(nightPrice, morningPrice, earlyPrice);
 
-        assertThat(validator.overlap(price1, price2)).isTrue();
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> validator.validateAll(prices))
+                .withMessage("Price causing violations: " + earlyPrice);
     }
 
     @Test
-    public void midnightShouldNotCauseProblems1() {
-        Price price1 = createPrice(LocalTime.of(0, 0), LocalTime.of(3, 45));
-        Price price2 = createPrice(LocalTime.of(4, 30), LocalTime.of(0, 0));
-
-        assertThat(validator.overlap(price1, price2)).isFalse();
+    public void shouldAcceptOverlappingPeriodsOnDifferentDays() {
+        Price weekdayPrice = createPrice(null, LocalTime.of(22, 0), LocalTime.of(6, 0), RateType.SPECIAL);
+        weekdayPrice.setDays(EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.THURSDAY));
+        Price weekendPrice = createPrice(null, LocalTime.of(0, 0), LocalTime.of(0, 0), RateType.SPECIAL);
+        weekendPrice.setDays(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+        Price holidayPrice = createPrice(null, LocalTime.of(0, 0), LocalTime.of(0, 0), RateType.SPECIAL);
+        holidayPrice.setDate(LocalDate.of(2019, Month.DECEMBER, 25));
+
+        assertThatCode(() -> validator.validateAll(Arrays.asList(weekdayPrice, weekendPrice, holidayPrice)))
+                .doesNotThrowAnyException();
     }
 
     @Test
-    public void midnightShouldNotCauseProblems2() {
-        Price price1 = createPrice(LocalTime.of(0, 0), LocalTime.of(3, 45));
-        Price price2 = createPrice(LocalTime.of(3, 30), LocalTime.of(0, 0));
+    public void shouldRejectOverlappingPeriodsOnCommonDay() {
+        Price fridayPrice = createPrice(1, LocalTime.of(22, 0), LocalTime.of(6, 0), RateType.SPECIAL);
+        fridayPrice.setDays(EnumSet.of(DayOfWeek.FRIDAY));
+        Price everydayPrice = createPrice(null, LocalTime.of(5, 0), LocalTime.of(7, 0), RateType.SPECIAL);
+        Price sundayPrice = createPrice(null, LocalTime.of(5, 0), LocalTime.of(7, 0), RateType.SPECIAL);
+        sundayPrice.setDays(EnumSet.of(DayOfWeek.SUNDAY));
 
-        assertThat(validator.overlap(price1, price2)).isTrue();
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> validator.validate(everydayPrice, singletonList(fridayPrice)))
+                .withMessage("Price causing violations: " + fridayPrice);
+        assertThatCode(() -> validator.validate(sundayPrice, singletonList(fridayPrice)))
+                .doesNotThrowAnyException();
     }
 
     @Test
-    public void twoPeriodsWithMidnightShouldOverlap() {
-        Price price1 = createPrice(LocalTime.of(23, 0), LocalTime.of(3, 0));
-        Price price2 = createPrice(LocalTime.of(21, 30), LocalTime.of(1, 0));
+    public void shouldRejectOverlappingPeriodsAfterMidnightOfNextDay() {
+        Price fridayPrice = createPrice(1, LocalTime.of(22, 0), LocalTime.of(6, 0), RateType.SPECIAL);
+        fridayPrice.setDays(EnumSet.of(DayOfWeek.FRIDAY));
+        Price saturdayPrice = createPrice(null, LocalTime.of(5, 0), LocalTime.of(7, 0), RateType.SPECIAL);
+        saturdayPrice.setDays(EnumSet.of(DayOfWeek.SATURDAY));
+        Price sundayPrice = createPrice(2, LocalTime.of(23, 0), LocalTime.of(1, 0), RateType.SPECIAL);
+        sundayPrice.setDays(EnumSet.of(DayOfWeek.SUNDAY));
+        Price mondayPrice = createPrice(null, LocalTime.of(0, 30), LocalTime.of(2, 0), RateType.SPECIAL);
+        mondayPrice.setDays(EnumSet.of(DayOfWeek.MONDAY));
+        Price newYearsEve = createPrice(3, LocalTime.of(22, 0), LocalTime.of(2, 0), RateType.SPECIAL);
+        newYearsEve.setDate(LocalDate.of(2019, Month.DECEMBER, 31));
+        Price newYear = createPrice(null, LocalTime.of(1, 0), LocalTime.of(3, 0), RateType.SPECIAL);
+        newYear.setDate(LocalDate.of(2020, Month.JANUARY, 1));
 
-        assertThat(validator.overlap(price1, price2)).isTrue();
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> validator.validate(saturdayPrice, singletonList(fridayPrice)))
+                .withMessage("Price causing violations: " + fridayPrice);
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> validator.validate(mondayPrice, singletonList(sundayPrice)))
+                .withMessage("Price causing violations: " + sundayPrice);
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> validator.validate(newYear, singletonList(newYearsEve)))
+                .withMessage("Price causing violations: " + newYearsEve);
     }
 
     @Test
-    public void periodAndItsCompletionShouldNotOverlap() {
-        Price price1 = createPrice(LocalTime.of(23, 0), LocalTime.of(3, 0));
-        Price price2 = createPrice(LocalTime.of(3, 0), LocalTime.of(23, 0));
-
-        assertThat(validator.overlap(price1, price2)).isFalse();
+    public void shouldRejectOverlappingPeriodsOfTheSameDate() {
+        Price christmasEve = createPrice(1, LocalTime.of(18, 0), LocalTime.of(0, 0), RateType.SPECIAL);
+        christmasEve.setDate(LocalDate.of(2019, Month.DECEMBER, 24));
+        Price christmas = createPrice(null, LocalTime.of(20, 0), LocalTime.of(22, 0), RateType.SPECIAL);
+        christmas.setDate(LocalDate.of(2019, Month.DECEMBER, 25));
+        Price lateEve = createPrice(null, LocalTime.of(20, 0), LocalTime.of(22, 0), RateType.SPECIAL);
+        lateEve.setDate(LocalDate.of(2019, Month.DECEMBER, 24));
+
+        assertThatCode(() -> validator.validate(christmas, singletonList(christmasEve)))
+                .doesNotThrowAnyException();
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> validator.validate(lateEve, singletonList(christmasEve)));
     }
 }
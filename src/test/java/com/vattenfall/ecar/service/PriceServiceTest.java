@@ -5,19 +5,38 @@ import com.vattenfall.ecar.exception.NoSuchPriceException;
 import com.vattenfall.ecar.exception.PriceException;
 import com.vattenfall.ecar.model.Price;
 import com.vattenfall.ecar.model.RateType;
+import com.vattenfall.ecar.model.TariffVersion;
 import com.vattenfall.ecar.repository.PriceRepository;
+import com.vattenfall.ecar.repository.TariffVersionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.Month;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+import static com.vattenfall.ecar.model.Price.DEFAULT_TARIFF_SET;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Mockito.*;
@@ -28,12 +47,43 @@ public class PriceServiceTest {
     @Mock
     private PriceRepository repository;
 
+    @Mock
+    private TariffVersionRepository tariffVersionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private PriceService service;
 
+    private final Map<String, AtomicLong> tariffVersions = new ConcurrentHashMap<>();
+
     @Before
     public void initRepository() {
         doAnswer(invocation -> invocation.getArgument(0)).when(repository).save(isA(Price.class));
+        doAnswer(invocation -> {
+            TariffVersion version = new TariffVersion();
+            version.setTariffSet(invocation.getArgument(0));
+            version.setVersion(tariffVersion(invocation.getArgument(0)).get());
+            return Optional.of(version);
+        }).when(tariffVersionRepository).findById(anyString());
+        doAnswer(invocation -> tariffVersion(invocation.getArgument(0)).incrementAndGet() > 0 ? 1 : 0)
+                .when(tariffVersionRepository).increment(anyString());
+        doAnswer(invocation -> tariffVersions.keySet().stream().map(tariffSet -> {
+            TariffVersion version = new TariffVersion();
+            version.setTariffSet(tariffSet);
+            version.setVersion(tariffVersion(tariffSet).get());
+            return version;
+        }).collect(Collectors.toList())).when(tariffVersionRepository).findAll();
+        tariffVersion(DEFAULT_TARIFF_SET);
+        tariffVersion("station-1");
+    }
+
+    private AtomicLong tariffVersion(String tariffSet) {
+        return tariffVersions.computeIfAbsent(tariffSet, name -> new AtomicLong());
     }
 
     @Test
@@ -43,7 +93,7 @@ public class PriceServiceTest {
         priceDto.setStartHour(LocalTime.of(1, 0));
         priceDto.setEndHour(LocalTime.of(2, 0));
 
-        PriceDto created = service.doCreate(priceDto);
+        PriceDto created = service.doCreate(DEFAULT_TARIFF_SET, priceDto);
 
         assertThat(created)
                 .extracting(PriceDto::getMinuteRate, PriceDto::getStartHour, PriceDto::getEndHour)
@@ -58,18 +108,149 @@ public class PriceServiceTest {
         price.setId(1);
         price.setMinuteRate(2.0);
         price.setRateType(RateType.BASIC);
-        doReturn(new ArrayList<>(Collections.singletonList(price))).when(repository).findAll();
+        doReturn(new ArrayList<>(Collections.singletonList(price)))
+                .when(repository).findByTariffSet(DEFAULT_TARIFF_SET);
+
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> service.doCreate(DEFAULT_TARIFF_SET, priceDto));
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        assertThat(meterRegistry.get("ecar.rejections").tag("exception", "PriceException").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    public void shouldValidateAgainstPriceCreatedBefore() {
+        PriceDto priceDto = new PriceDto();
+        priceDto.setMinuteRate(1.0);
+        Price price = new Price();
+        price.setId(1);
+        price.setMinuteRate(1.0);
+        price.setRateType(RateType.BASIC);
+        doReturn(new ArrayList<>()).doReturn(new ArrayList<>(Collections.singletonList(price)))
+                .when(repository).findByTariffSet(DEFAULT_TARIFF_SET);
+
+        service.doCreate(DEFAULT_TARIFF_SET, priceDto);
+
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> service.doCreate(DEFAULT_TARIFF_SET, priceDto));
+        verify(transactionManager).commit(any());
+        verify(repository, times(2)).findByTariffSet(DEFAULT_TARIFF_SET);
+    }
+
+    @Test
+    public void shouldReplaceAllPricesAndRefreshSnapshotOnce() {
+        PriceDto basicPrice = new PriceDto();
+        basicPrice.setMinuteRate(1.0);
+        PriceDto specialPrice = new PriceDto();
+        specialPrice.setMinuteRate(0.5);
+        specialPrice.setStartHour(LocalTime.of(22, 0));
+        specialPrice.setEndHour(LocalTime.of(6, 0));
+        doAnswer(invocation -> invocation.getArgument(0)).when(repository).saveAll(anyList());
+        TariffSnapshot snapshot = service.getSnapshot(DEFAULT_TARIFF_SET);
+
+        List<PriceDto> created = service.doReplaceAll(DEFAULT_TARIFF_SET,
+                Arrays.asList(basicPrice, specialPrice), null);
+
+        assertThat(created).extracting(PriceDto::getMinuteRate).containsExactly(1.0, 0.5);
+        assertThat(service.getSnapshot(DEFAULT_TARIFF_SET).getVersion()).isEqualTo(snapshot.getVersion() + 1);
+        verify(repository).deleteByTariffSet(DEFAULT_TARIFF_SET);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    public void shouldReplaceOnlyTariffVersionEffectiveFromPassedDate() {
+        PriceDto basicPrice = new PriceDto();
+        basicPrice.setMinuteRate(1.0);
+        LocalDateTime effectiveFrom = LocalDateTime.of(2019, Month.MAY, 1, 0, 0);
+        doAnswer(invocation -> invocation.getArgument(0)).when(repository).saveAll(anyList());
+
+        List<PriceDto> created = service.doReplaceAll(DEFAULT_TARIFF_SET,
+                Collections.singletonList(basicPrice), effectiveFrom);
+
+        assertThat(created).extracting(PriceDto::getEffectiveFrom).containsExactly(effectiveFrom);
+        verify(repository).deleteByTariffSetAndEffectiveFrom(DEFAULT_TARIFF_SET, effectiveFrom);
+        verify(repository, never()).deleteByTariffSet(DEFAULT_TARIFF_SET);
+    }
+
+    @Test
+    public void shouldValidatePriceAgainstItsTariffVersionOnly() {
+        Price price = new Price();
+        price.setId(1);
+        price.setMinuteRate(2.0);
+        price.setRateType(RateType.BASIC);
+        doReturn(new ArrayList<>(Collections.singletonList(price)))
+                .when(repository).findByTariffSet(DEFAULT_TARIFF_SET);
+        PriceDto priceDto = new PriceDto();
+        priceDto.setMinuteRate(1.0);
+        priceDto.setEffectiveFrom(LocalDateTime.of(2019, Month.MAY, 1, 0, 0));
+
+        PriceDto created = service.doCreate(DEFAULT_TARIFF_SET, priceDto);
+
+        assertThat(created.getEffectiveFrom()).isEqualTo(priceDto.getEffectiveFrom());
+    }
+
+    @Test
+    public void shouldNotCreateSpecialPriceOfTariffVersionWithoutBasicPrice() {
+        Price price = new Price();
+        price.setId(1);
+        price.setMinuteRate(2.0);
+        price.setRateType(RateType.BASIC);
+        doReturn(new ArrayList<>(Collections.singletonList(price)))
+                .when(repository).findByTariffSet(DEFAULT_TARIFF_SET);
+        PriceDto priceDto = new PriceDto();
+        priceDto.setMinuteRate(1.0);
+        priceDto.setStartHour(LocalTime.of(22, 0));
+        priceDto.setEndHour(LocalTime.of(6, 0));
+        priceDto.setEffectiveFrom(LocalDateTime.of(2019, Month.MAY, 1, 0, 0));
 
-        assertThatExceptionOfType(PriceException.class).isThrownBy(() -> service.doCreate(priceDto));
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> service.doCreate(DEFAULT_TARIFF_SET, priceDto))
+                .withMessage("Tariff version with an effective date needs a basic price.");
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    public void shouldNotReplaceTariffVersionWithoutBasicPrice() {
+        PriceDto specialPrice = new PriceDto();
+        specialPrice.setMinuteRate(0.5);
+        specialPrice.setStartHour(LocalTime.of(22, 0));
+        specialPrice.setEndHour(LocalTime.of(6, 0));
+        LocalDateTime effectiveFrom = LocalDateTime.of(2019, Month.MAY, 1, 0, 0);
+
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> service.doReplaceAll(DEFAULT_TARIFF_SET,
+                        Collections.singletonList(specialPrice), effectiveFrom))
+                .withMessage("Tariff version with an effective date needs a basic price.");
+        verify(repository, never()).deleteByTariffSetAndEffectiveFrom(DEFAULT_TARIFF_SET, effectiveFrom);
+    }
+
+    @Test
+    public void shouldNotReplacePricesWithInvalidSchedule() {
+        PriceDto specialPrice1 = new PriceDto();
+        specialPrice1.setMinuteRate(0.5);
+        specialPrice1.setStartHour(LocalTime.of(22, 0));
+        specialPrice1.setEndHour(LocalTime.of(6, 0));
+        PriceDto specialPrice2 = new PriceDto();
+        specialPrice2.setMinuteRate(0.6);
+        specialPrice2.setStartHour(LocalTime.of(5, 0));
+        specialPrice2.setEndHour(LocalTime.of(7, 0));
+
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> service.doReplaceAll(DEFAULT_TARIFF_SET,
+                        Arrays.asList(specialPrice1, specialPrice2), null));
+        verify(repository, never()).deleteByTariffSet(DEFAULT_TARIFF_SET);
+        verify(transactionManager).rollback(any());
     }
 
     @Test
     public void shouldThrowExceptionWhenPriceCannotBeFound() {
         PriceDto priceDto = new PriceDto();
         priceDto.setId(1);
-        doReturn(Optional.empty()).when(repository).findById(1);
+        doReturn(Optional.empty()).when(repository).findByIdAndTariffSet(1, DEFAULT_TARIFF_SET);
 
-        assertThatExceptionOfType(NoSuchPriceException.class).isThrownBy(() -> service.doUpdate(priceDto));
+        assertThatExceptionOfType(NoSuchPriceException.class)
+                .isThrownBy(() -> service.doUpdate(DEFAULT_TARIFF_SET, priceDto));
     }
 
     @Test
@@ -81,9 +262,9 @@ public class PriceServiceTest {
         price.setId(1);
         price.setMinuteRate(2.0);
         price.setRateType(RateType.BASIC);
-        doReturn(Optional.of(price)).when(repository).findById(1);
+        doReturn(Optional.of(price)).when(repository).findByIdAndTariffSet(1, DEFAULT_TARIFF_SET);
 
-        PriceDto updated = service.doUpdate(priceDto);
+        PriceDto updated = service.doUpdate(DEFAULT_TARIFF_SET, priceDto);
 
         assertThat(updated.getMinuteRate()).isEqualTo(1.5);
     }
@@ -97,9 +278,9 @@ public class PriceServiceTest {
         price.setId(1);
         price.setMinuteRate(2.0);
         price.setRateType(RateType.BASIC);
-        doReturn(Optional.of(price)).when(repository).findById(1);
+        doReturn(Optional.of(price)).when(repository).findByIdAndTariffSet(1, DEFAULT_TARIFF_SET);
 
-        PriceDto updated = service.doUpdate(priceDto);
+        PriceDto updated = service.doUpdate(DEFAULT_TARIFF_SET, priceDto);
 
         assertThat(updated.getStartHour()).isNull();
     }
@@ -113,13 +294,37 @@ public class PriceServiceTest {
         price.setId(1);
         price.setMinuteRate(2.0);
         price.setRateType(RateType.BASIC);
-        doReturn(Optional.of(price)).when(repository).findById(1);
+        doReturn(Optional.of(price)).when(repository).findByIdAndTariffSet(1, DEFAULT_TARIFF_SET);
 
-        PriceDto updated = service.doUpdate(priceDto);
+        PriceDto updated = service.doUpdate(DEFAULT_TARIFF_SET, priceDto);
 
         assertThat(updated.getEndHour()).isNull();
     }
 
+    @Test
+    public void shouldNotLimitBasicPriceToDaysOrDate() {
+        Price price = new Price();
+        price.setId(1);
+        price.setMinuteRate(2.0);
+        price.setRateType(RateType.BASIC);
+        doReturn(Optional.of(price)).when(repository).findByIdAndTariffSet(1, DEFAULT_TARIFF_SET);
+        PriceDto days = new PriceDto();
+        days.setId(1);
+        days.setDays(EnumSet.of(DayOfWeek.SATURDAY));
+        PriceDto date = new PriceDto();
+        date.setId(1);
+        date.setDate(LocalDate.of(2019, Month.DECEMBER, 25));
+
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> service.doUpdate(DEFAULT_TARIFF_SET, days))
+                .withMessage("Basic price cannot be limited to some days or to a date.");
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> service.doUpdate(DEFAULT_TARIFF_SET, date));
+        assertThat(price.getDays()).isNull();
+        assertThat(price.getDate()).isNull();
+        verify(transactionManager, never()).commit(any());
+    }
+
     @Test
     public void shouldUpdateStartAndEndHourInSpecialPrice() {
         PriceDto priceDto = new PriceDto();
@@ -130,26 +335,191 @@ public class PriceServiceTest {
         Price price = new Price();
         price.setId(1);
         price.setRateType(RateType.SPECIAL);
-        doReturn(Optional.of(price)).when(repository).findById(1);
+        doReturn(Optional.of(price)).when(repository).findByIdAndTariffSet(1, DEFAULT_TARIFF_SET);
 
-        PriceDto updated = service.doUpdate(priceDto);
+        PriceDto updated = service.doUpdate(DEFAULT_TARIFF_SET, priceDto);
 
         assertThat(updated).isEqualToComparingFieldByField(priceDto);
     }
 
     @Test
     public void shouldDeleteById() {
-        service.doDelete(1);
+        service.doDelete(DEFAULT_TARIFF_SET, 1);
 
-        verify(repository).deleteById(1);
+        verify(repository).deleteByIdAndTariffSet(1, DEFAULT_TARIFF_SET);
+        verify(repository).findByTariffSet(DEFAULT_TARIFF_SET);
         verifyNoMoreInteractions(repository);
     }
 
     @Test
     public void shouldFindAll() {
-        service.findAll();
+        service.findAll(DEFAULT_TARIFF_SET);
 
-        verify(repository).findAll();
+        verify(repository).findByTariffSet(DEFAULT_TARIFF_SET);
         verifyNoMoreInteractions(repository);
     }
+
+    @Test
+    public void shouldReturnPageOfPricesOrderedByIds() {
+        List<Price> prices = new ArrayList<>();
+        for (int id = 5; id >= 1; id--) {
+            Price price = new Price();
+            price.setId(id);
+            price.setMinuteRate((double) id);
+            price.setRateType(RateType.BASIC);
+            prices.add(price);
+        }
+        doReturn(prices).when(repository).findByTariffSet(DEFAULT_TARIFF_SET);
+        TariffSnapshot snapshot = service.getSnapshot(DEFAULT_TARIFF_SET);
+
+        assertThat(service.findPage(snapshot, 1, 2).getPrices()).extracting(PriceDto::getId).containsExactly(3, 4);
+        assertThat(service.findPage(snapshot, 2, 2).getPrices()).extracting(PriceDto::getId).containsExactly(5);
+        assertThat(service.findPage(snapshot, 3, 2).getPrices()).isEmpty();
+        assertThat(service.findPage(snapshot, 3, 2).getTotal()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldReadPricesFromDatabaseOnlyOnceUntilModification() {
+        Price price = new Price();
+        price.setId(1);
+        price.setMinuteRate(2.0);
+        price.setRateType(RateType.BASIC);
+        doReturn(new ArrayList<>(Collections.singletonList(price)))
+                .when(repository).findByTariffSet(DEFAULT_TARIFF_SET);
+
+        TariffSnapshot snapshot = service.getSnapshot(DEFAULT_TARIFF_SET);
+        service.findAll(DEFAULT_TARIFF_SET);
+        service.getTariff(DEFAULT_TARIFF_SET);
+        price.setMinuteRate(3.0);
+
+        assertThat(service.getSnapshot(DEFAULT_TARIFF_SET)).isSameAs(snapshot);
+        assertThat(service.findAll(DEFAULT_TARIFF_SET)).extracting(PriceDto::getMinuteRate).containsExactly(2.0);
+        verify(repository).findByTariffSet(DEFAULT_TARIFF_SET);
+
+        service.doDelete(DEFAULT_TARIFF_SET, 2);
+
+        assertThat(service.getSnapshot(DEFAULT_TARIFF_SET).getVersion()).isGreaterThan(snapshot.getVersion());
+        assertThat(service.findAll(DEFAULT_TARIFF_SET)).extracting(PriceDto::getMinuteRate).containsExactly(3.0);
+        assertThat(meterRegistry.get("ecar.tariff.snapshot.requests").tag("result", "miss").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("ecar.tariff.snapshot.refreshes").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void shouldValidateAgainstPricesCreatedByOtherInstance() {
+        TariffSnapshot snapshot = service.getSnapshot(DEFAULT_TARIFF_SET);
+        Price price = new Price();
+        price.setId(1);
+        price.setMinuteRate(2.0);
+        price.setRateType(RateType.BASIC);
+        doReturn(new ArrayList<>(Collections.singletonList(price)))
+                .when(repository).findByTariffSet(DEFAULT_TARIFF_SET);
+        tariffVersion(DEFAULT_TARIFF_SET).incrementAndGet();
+        PriceDto priceDto = new PriceDto();
+        priceDto.setMinuteRate(1.0);
+
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> service.doCreate(DEFAULT_TARIFF_SET, priceDto));
+        assertThat(service.getSnapshot(DEFAULT_TARIFF_SET)).isSameAs(snapshot);
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    public void shouldIncrementVersionCreatedConcurrentlyByOtherInstance() {
+        doReturn(0).doAnswer(invocation -> (int) tariffVersion("station-1").incrementAndGet())
+                .when(tariffVersionRepository).increment("station-1");
+        doAnswer(invocation -> {
+            tariffVersion("station-1").set(3L);
+            throw new DataIntegrityViolationException("Unique index or primary key violation");
+        }).when(tariffVersionRepository).create("station-1");
+        PriceDto priceDto = new PriceDto();
+        priceDto.setMinuteRate(1.0);
+
+        service.doCreate("station-1", priceDto);
+
+        verify(tariffVersionRepository, times(2)).increment("station-1");
+        assertThat(service.getSnapshot("station-1").getVersion()).isEqualTo(4L);
+    }
+
+    @Test
+    public void shouldTagSnapshotsByVersionAndContent() {
+        Price price = new Price();
+        price.setId(1);
+        price.setMinuteRate(2.0);
+        price.setRateType(RateType.BASIC);
+
+        String tag = TariffSnapshot.of(3, Collections.singletonList(price)).getTag();
+
+        assertThat(TariffSnapshot.of(3, Collections.singletonList(price)).getTag()).isEqualTo(tag);
+        assertThat(TariffSnapshot.of(4, Collections.singletonList(price)).getTag()).isNotEqualTo(tag);
+        price.setMinuteRate(3.0);
+        assertThat(TariffSnapshot.of(3, Collections.singletonList(price)).getTag()).isNotEqualTo(tag);
+        assertThat(TariffSnapshot.of("station-1", 3, Collections.emptyList()).getTag()).startsWith("station-1-3-");
+    }
+
+    @Test
+    public void shouldKeepTariffSetsIndependent() {
+        Price price = new Price();
+        price.setId(1);
+        price.setMinuteRate(2.0);
+        price.setRateType(RateType.BASIC);
+        price.setTariffSet("station-1");
+        doReturn(new ArrayList<>(Collections.singletonList(price))).when(repository).findByTariffSet("station-1");
+        PriceDto priceDto = new PriceDto();
+        priceDto.setMinuteRate(1.0);
+
+        TariffSnapshot snapshot = service.getSnapshot("station-1");
+        PriceDto created = service.doCreate(DEFAULT_TARIFF_SET, priceDto);
+
+        assertThat(created.getMinuteRate()).isEqualTo(1.0);
+        assertThat(service.getSnapshot("station-1")).isSameAs(snapshot);
+        assertThat(service.findAll("station-1")).extracting(PriceDto::getMinuteRate).containsExactly(2.0);
+        assertThat(service.getSnapshot(DEFAULT_TARIFF_SET).getVersion()).isEqualTo(1L);
+        assertThat(meterRegistry.get("ecar.tariff.snapshots").gauge().value()).isEqualTo(2.0);
+        assertThatExceptionOfType(PriceException.class)
+                .isThrownBy(() -> service.doCreate("station-1", priceDto));
+    }
+
+    @Test
+    public void shouldNotLoadTariffSetsWhichHaveNeverBeenModified() {
+        TariffSnapshot snapshot = service.getSnapshot("unknown");
+
+        assertThat(snapshot).isSameAs(TariffSnapshot.EMPTY);
+        assertThat(snapshot.getPrices()).isEmpty();
+        assertThat(service.getSnapshot("unknown")).isSameAs(snapshot);
+        assertThat(service.getSnapshot("other")).isSameAs(snapshot);
+        assertThat(meterRegistry.get("ecar.tariff.snapshots").gauge().value()).isEqualTo(0.0);
+        verify(tariffVersionRepository).findAll();
+        verify(tariffVersionRepository, never()).findById(anyString());
+        verify(repository, never()).findByTariffSet(anyString());
+    }
+
+    @Test
+    public void shouldLoadTariffSetCreatedByOtherInstanceAfterPolling() {
+        assertThat(service.getSnapshot("station-2")).isSameAs(TariffSnapshot.EMPTY);
+        tariffVersion("station-2").set(1L);
+
+        service.refreshIfChanged();
+
+        assertThat(service.getSnapshot("station-2").getVersion()).isEqualTo(1L);
+        verify(repository).findByTariffSet("station-2");
+    }
+
+    @Test
+    public void shouldRefreshOnlyLoadedTariffSetsChangedByOtherInstance() {
+        TariffSnapshot snapshot = service.getSnapshot(DEFAULT_TARIFF_SET);
+        TariffVersion changed = new TariffVersion();
+        changed.setTariffSet(DEFAULT_TARIFF_SET);
+        changed.setVersion(tariffVersion(DEFAULT_TARIFF_SET).incrementAndGet());
+        TariffVersion notLoaded = new TariffVersion();
+        notLoaded.setTariffSet("station-1");
+        notLoaded.setVersion(5L);
+        doReturn(Arrays.asList(changed, notLoaded)).when(tariffVersionRepository).findAll();
+
+        service.refreshIfChanged();
+
+        assertThat(service.getSnapshot(DEFAULT_TARIFF_SET).getVersion()).isEqualTo(snapshot.getVersion() + 1);
+        verify(repository, times(2)).findByTariffSet(DEFAULT_TARIFF_SET);
+        verify(repository, never()).findByTariffSet("station-1");
+    }
 }
@@ -0,0 +1,30 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.model.Price;
+import com.vattenfall.ecar.model.RateType;
+
+import java.time.LocalTime;
+
+/**
+ * Creates prices for tests of compiled tariffs.
+ */
+final class Prices {
+
+    private Prices() {
+    }
+
+    /**
+     * @param rate  minute rate
+     * @param start start hour of a special price or null for the basic price
+     * @param end   end hour of a special price or null for the basic price
+     * @return basic or special price without id
+     */
+    static Price createPrice(double rate, LocalTime start, LocalTime end) {
+        Price price = new Price();
+        price.setMinuteRate(rate);
+        price.setStartHour(start);
+        price.setEndHour(end);
+        price.setRateType(start == null ? RateType.BASIC : RateType.SPECIAL);
+        return price;
+    }
+}
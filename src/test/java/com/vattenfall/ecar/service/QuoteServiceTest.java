@@ -0,0 +1,142 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.dto.ChargingWindowDto;
+import com.vattenfall.ecar.dto.PriceCurveDto;
+import com.vattenfall.ecar.exception.NoSuchCustomerException;
+import com.vattenfall.ecar.exception.NotEnoughDataException;
+import com.vattenfall.ecar.model.Price;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static com.vattenfall.ecar.model.Price.DEFAULT_TARIFF_SET;
+import static com.vattenfall.ecar.service.Prices.createPrice;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.doReturn;
+
+@RunWith(MockitoJUnitRunner.class)
+public class QuoteServiceTest {
+
+    @Mock
+    private PriceService priceService;
+
+    @Mock
+    private CustomerIndex customerIndex;
+
+    private CacheManager cacheManager = new ConcurrentMapCacheManager("curves");
+
+    private QuoteService quoteService;
+
+    private LocalDateTime evening = LocalDateTime.of(2019, Month.APRIL, 5, 18, 0);
+
+    @Before
+    public void init() {
+        Calculator calculator = new Calculator(priceService, customerIndex, new SimpleMeterRegistry(),
+                new NoOpCacheManager());
+        calculator.setVipDiscount("10%");
+        quoteService = new QuoteService(priceService, customerIndex, calculator, cacheManager);
+    }
+
+    @Test
+    public void shouldFindCheapestWindowBeforeDeadline() {
+        doReturn(TariffSnapshot.of(1, Arrays.asList(
+                createPrice(0.3, null, null),
+                createPrice(0.2, LocalTime.of(22, 0), LocalTime.of(1, 0)),
+                createPrice(0.1, LocalTime.of(2, 0), LocalTime.of(4, 0)))))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        ChargingWindowDto window = quoteService.findCheapestWindow(DEFAULT_TARIFF_SET,
+                null, 120, evening, evening.plusHours(13));
+
+        assertThat(window.getStart()).isEqualTo(evening.plusHours(8));
+        assertThat(window.getEnd()).isEqualTo(evening.plusHours(10));
+        assertThat(window.getTotal()).isEqualTo(12.0);
+    }
+
+    @Test
+    public void shouldChooseEarliestOfEquallyCheapWindowsAndApplyDiscount() {
+        doReturn(true).when(customerIndex).findVip(1L);
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(createPrice(0.5, null, null))))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        ChargingWindowDto window = quoteService.findCheapestWindow(DEFAULT_TARIFF_SET,
+                1L, 60, evening, evening.plusHours(3));
+
+        assertThat(window.getStart()).isEqualTo(evening);
+        assertThat(window.getTotal()).isEqualTo(27.0);
+    }
+
+    @Test
+    public void shouldSkipMinutesWithoutPrice() {
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(
+                createPrice(0.1, LocalTime.of(19, 0), LocalTime.of(20, 0)))))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        ChargingWindowDto window = quoteService.findCheapestWindow(DEFAULT_TARIFF_SET, null, 60,
+                evening, evening.plusHours(3));
+
+        assertThat(window.getStart()).isEqualTo(evening.plusHours(1));
+        assertThatExceptionOfType(NotEnoughDataException.class)
+                .isThrownBy(() -> quoteService.findCheapestWindow(DEFAULT_TARIFF_SET, null, 61,
+                        evening, evening.plusHours(3)));
+    }
+
+    @Test
+    public void shouldThrowExceptionWhenCustomerIsMissing() {
+        doReturn(null).when(customerIndex).findVip(-1L);
+
+        assertThatExceptionOfType(NoSuchCustomerException.class)
+                .isThrownBy(() -> quoteService.findCheapestWindow(DEFAULT_TARIFF_SET, -1L, 60,
+                        evening, evening.plusHours(3)));
+    }
+
+    @Test
+    public void shouldCalculatePriceCurveAndCacheItPerSnapshot() {
+        doReturn(TariffSnapshot.of(1, Arrays.asList(
+                createPrice(0.3, null, null),
+                createPrice(0.1, LocalTime.of(23, 0), LocalTime.of(1, 0)))))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        PriceCurveDto curve = quoteService.findPriceCurve(DEFAULT_TARIFF_SET, null, 60, evening);
+
+        assertThat(curve.getDuration()).isEqualTo(60);
+        assertThat(curve.getTotals()).hasSize(1440);
+        assertThat(curve.getTotals().get(0)).isEqualTo(6.0);
+        assertThat(curve.getTotals().get(22 * 60 + 30)).isEqualTo(12.0);
+        assertThat(curve.getTotals().get(23 * 60 + 30)).isEqualTo(6.0);
+        assertThat(quoteService.findPriceCurve(DEFAULT_TARIFF_SET, null, 60, evening.plusDays(1)).getTotals())
+                .isEqualTo(curve.getTotals());
+        assertThat(cachedCurves()).hasSize(1);
+    }
+
+    private Map<?, ?> cachedCurves() {
+        return (Map<?, ?>) cacheManager.getCache("curves").getNativeCache();
+    }
+
+    @Test
+    public void shouldLeaveUnpricedStartsEmpty() {
+        doReturn(TariffSnapshot.of(1, Collections.singletonList(
+                createPrice(0.1, LocalTime.of(0, 0), LocalTime.of(12, 0)))))
+                .when(priceService).getSnapshot(DEFAULT_TARIFF_SET);
+
+        PriceCurveDto curve = quoteService.findPriceCurve(DEFAULT_TARIFF_SET, null, 60, evening);
+
+        assertThat(curve.getTotals().get(11 * 60)).isEqualTo(6.0);
+        assertThat(curve.getTotals().get(11 * 60 + 1)).isNull();
+        assertThat(curve.getTotals().get(23 * 60)).isNull();
+    }
+}
@@ -0,0 +1,34 @@
+package com.vattenfall.ecar.service;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TariffPollerTest {
+
+    @Mock
+    private PriceService priceService;
+
+    @InjectMocks
+    private TariffPoller poller;
+
+    @Test
+    public void shouldPollOnlyWhileRunning() {
+        poller.poll();
+        verifyZeroInteractions(priceService);
+
+        poller.start();
+        poller.poll();
+        poller.stop();
+        poller.poll();
+
+        verify(priceService, times(1)).refreshIfChanged();
+    }
+}
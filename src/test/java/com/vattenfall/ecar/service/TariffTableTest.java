@@ -0,0 +1,117 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.exception.NotEnoughDataException;
+import com.vattenfall.ecar.model.Price;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static com.vattenfall.ecar.service.Prices.createPrice;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class TariffTableTest {
+
+    @Test
+    public void shouldChargeSpecialPeriodContainingMidnight() {
+        TariffTable table = TariffTable.compile(Arrays.asList(
+                createPrice(1.0, null, null),
+                createPrice(0.5, LocalTime.of(22, 0), LocalTime.of(2, 0))));
+        LocalDateTime start = LocalDateTime.of(2019, Month.APRIL, 5, 21, 0);
+
+        assertThat(table.costInMicros(start, start.plusHours(6))).isEqualTo((60 + 4 * 30 + 60) * 1_000_000L);
+    }
+
+    @Test
+    public void shouldChargeManyDaysWithoutBasicPriceWhenSpecialPeriodCoversWholeDay() {
+        TariffTable table = TariffTable.compile(Collections.singletonList(
+                createPrice(0.1, LocalTime.of(6, 0), LocalTime.of(6, 0))));
+        LocalDateTime start = LocalDateTime.of(2019, Month.JANUARY, 1, 13, 17);
+
+        assertThat(table.costInMicros(start, start.plusDays(365))).isEqualTo(365 * 144_000_000L);
+    }
+
+    @Test
+    public void shouldRequireBasicPriceOnlyForUncoveredMinutes() {
+        TariffTable table = TariffTable.compile(Collections.singletonList(
+                createPrice(0.1, LocalTime.of(6, 0), LocalTime.of(8, 0))));
+        LocalDateTime start = LocalDateTime.of(2019, Month.APRIL, 5, 6, 0);
+
+        assertThat(table.costInMicros(start, start.plusHours(2))).isEqualTo(12_000_000L);
+        assertThatExceptionOfType(NotEnoughDataException.class)
+                .isThrownBy(() -> table.costInMicros(start, start.plusHours(3)))
+                .withMessage("Basic price is missing");
+    }
+
+    @Test
+    public void shouldCalculateCostCurveOfProcessesLongerThanDay() {
+        TariffTable table = TariffTable.compile(Arrays.asList(
+                createPrice(1.0, null, null),
+                createPrice(0.5, LocalTime.of(22, 0), LocalTime.of(2, 0))));
+        LocalDateTime midnight = LocalDateTime.of(2019, Month.APRIL, 5, 0, 0);
+        int minutes = 1440 + 90;
+
+        long[] curve = table.costCurveInMicros(minutes);
+
+        for (int start = 0; start < 1440; start += 7) {
+            LocalDateTime processStart = midnight.plusMinutes(start);
+            assertThat(curve[start]).isEqualTo(table.costInMicros(processStart, processStart.plusMinutes(minutes)));
+        }
+    }
+
+    @Test
+    public void shouldKeepRecordsOfManyTablesSeparate() {
+        int count = 200;
+        List<TariffTable> tables = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            tables.add(TariffTable.compile(Arrays.asList(
+                    createPrice(i, null, null),
+                    createPrice(i / 10.0, LocalTime.of(22, 0), LocalTime.of(2, 0)))));
+        }
+        LocalDateTime start = LocalDateTime.of(2019, Month.APRIL, 5, 21, 0);
+
+        for (int i = 1; i <= count; i++) {
+            assertThat(tables.get(i - 1).costInMicros(start, start.plusHours(6)))
+                    .isEqualTo(i * (60 + 4 * 6 + 60) * 1_000_000L);
+        }
+    }
+
+    @Test
+    public void shouldReleaseDirectMemoryOfReplacedSnapshots() throws InterruptedException {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new JvmMemoryMetrics().bindTo(meterRegistry);
+        Gauge directMemory = meterRegistry.get("jvm.buffer.memory.used").tag("id", "direct").gauge();
+        System.gc();
+        double bound = directMemory.value() + (2 << 20);
+        List<TariffSnapshot> retained = new ArrayList<>();
+        for (int version = 1; version <= 2000; version++) {
+            Price weekendPrice = createPrice(version / 1000.0, LocalTime.of(22, 0), LocalTime.of(2, 0));
+            weekendPrice.setDays(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+            TariffSnapshot snapshot = TariffSnapshot.of(version,
+                    Arrays.asList(createPrice(1.0, null, null), weekendPrice));
+            if (version % 100 == 0) {
+                retained.add(snapshot);
+            }
+        }
+
+        for (int attempt = 0; attempt < 50 && directMemory.value() > bound; attempt++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        assertThat(directMemory.value()).isLessThan(bound);
+        assertThat(retained).hasSize(20);
+    }
+}
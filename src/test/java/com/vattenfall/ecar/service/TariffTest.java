@@ -0,0 +1,70 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.exception.NotEnoughDataException;
+import com.vattenfall.ecar.model.Price;
+import com.vattenfall.ecar.model.RateType;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class TariffTest {
+
+    private LocalDateTime may = LocalDateTime.of(2019, Month.MAY, 1, 0, 0);
+
+    private Price createBasicPrice(double rate, LocalDateTime effectiveFrom) {
+        Price price = new Price();
+        price.setMinuteRate(rate);
+        price.setRateType(RateType.BASIC);
+        price.setEffectiveFrom(effectiveFrom);
+        return price;
+    }
+
+    @Test
+    public void shouldChargeEveryPartOfProcessWithItsVersion() {
+        Tariff tariff = Tariff.compile(Arrays.asList(createBasicPrice(0.1, null), createBasicPrice(0.2, may)));
+        LocalDateTime start = may.minusHours(1);
+
+        assertThat(tariff.getVersionCount()).isEqualTo(2);
+        assertThat(tariff.costInMicros(start, may)).isEqualTo(6_000_000L);
+        assertThat(tariff.costInMicros(may, may.plusHours(1))).isEqualTo(12_000_000L);
+        assertThat(tariff.costInMicros(start, may.plusHours(1))).isEqualTo(18_000_000L);
+    }
+
+    @Test
+    public void shouldFindVersionAmongManyVersions() {
+        List<Price> prices = new ArrayList<>();
+        for (int day = 0; day < 100; day++) {
+            prices.add(createBasicPrice(day, may.plusDays(day)));
+        }
+        Tariff tariff = Tariff.compile(prices);
+        LocalDateTime start = may.plusDays(41).plusHours(23);
+
+        assertThat(tariff.costInMicros(start, start.plusHours(2))).isEqualTo((60 * 41 + 60 * 42) * 1_000_000L);
+        assertThat(tariff.costInMicros(may.plusDays(200), may.plusDays(200).plusMinutes(1))).isEqualTo(99_000_000L);
+    }
+
+    @Test
+    public void shouldRequireBasePriceBeforeFirstVersion() {
+        Tariff tariff = Tariff.compile(Collections.singletonList(createBasicPrice(0.2, may)));
+
+        assertThat(tariff.costInMicros(may, may.plusMinutes(10))).isEqualTo(2_000_000L);
+        assertThatExceptionOfType(NotEnoughDataException.class)
+                .isThrownBy(() -> tariff.costInMicros(may.minusMinutes(1), may.plusMinutes(10)));
+    }
+
+    @Test
+    public void shouldReturnMinuteRatesOfConsecutiveVersions() {
+        Tariff tariff = Tariff.compile(Collections.singletonList(createBasicPrice(0.2, may)));
+
+        assertThat(tariff.minuteRatesInMicros(may.minusMinutes(2), 4))
+                .containsExactly(TariffTable.UNPRICED, TariffTable.UNPRICED, 200_000L, 200_000L);
+    }
+}
@@ -0,0 +1,141 @@
+package com.vattenfall.ecar.service;
+
+import com.vattenfall.ecar.exception.NotEnoughDataException;
+import com.vattenfall.ecar.model.Price;
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static com.vattenfall.ecar.service.Prices.createPrice;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class WeekTableTest {
+
+    private static final LocalDate CHRISTMAS = LocalDate.of(2019, Month.DECEMBER, 25);
+
+    private WeekTable createTable() {
+        Price nightPrice = createPrice(0.5, LocalTime.of(22, 0), LocalTime.of(6, 0));
+        nightPrice.setDays(EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY));
+        Price weekendPrice = createPrice(0.25, LocalTime.of(6, 0), LocalTime.of(22, 0));
+        weekendPrice.setDays(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+        Price holidayPrice = createPrice(0.1, LocalTime.of(8, 0), LocalTime.of(20, 0));
+        holidayPrice.setDate(CHRISTMAS);
+        return WeekTable.compile(Arrays.asList(createPrice(1.0, null, null), nightPrice, weekendPrice, holidayPrice));
+    }
+
+    private long sumOfMinuteRates(WeekTable table, LocalDateTime start, LocalDateTime end) {
+        long cost = 0;
+        for (LocalDateTime minute = start; minute.isBefore(end); minute = minute.plusMinutes(1)) {
+            cost += table.getDay(minute.toLocalDate()).minuteRateInMicros(minute.getHour() * 60 + minute.getMinute());
+        }
+        return cost;
+    }
+
+    @Test
+    public void shouldChargeDaysOfWeekWithTheirOwnPrices() {
+        WeekTable table = createTable();
+        LocalDateTime friday = LocalDateTime.of(2019, Month.APRIL, 5, 21, 0);
+
+        assertThat(table.costInMicros(friday, friday.plusHours(2))).isEqualTo(90_000_000L);
+        assertThat(table.costInMicros(friday.plusHours(2), friday.plusHours(4))).isEqualTo(60_000_000L);
+        assertThat(table.costInMicros(friday.plusHours(8), friday.plusHours(10))).isEqualTo(45_000_000L);
+        assertThat(table.getDay(friday.toLocalDate().plusDays(3)).minuteRateInMicros(60)).isEqualTo(1_000_000L);
+        assertThat(table.getDay(friday.toLocalDate().plusDays(4)).minuteRateInMicros(60)).isEqualTo(500_000L);
+    }
+
+    @Test
+    public void shouldContinuePeriodsContainingMidnightOnNextDay() {
+        Price sundayPrice = createPrice(0.5, LocalTime.of(22, 0), LocalTime.of(2, 0));
+        sundayPrice.setDays(EnumSet.of(DayOfWeek.SUNDAY));
+        Price newYearsEvePrice = createPrice(0.1, LocalTime.of(22, 0), LocalTime.of(2, 0));
+        newYearsEvePrice.setDate(LocalDate.of(2019, Month.DECEMBER, 31));
+        WeekTable table = WeekTable.compile(Arrays.asList(createPrice(1.0, null, null), sundayPrice, newYearsEvePrice));
+        LocalDateTime sunday = LocalDateTime.of(2019, Month.APRIL, 7, 23, 0);
+        LocalDateTime newYearsEve = LocalDateTime.of(2019, Month.DECEMBER, 31, 23, 0);
+
+        assertThat(table.costInMicros(sunday, sunday.plusHours(2))).isEqualTo(60_000_000L);
+        assertThat(table.getDay(sunday.toLocalDate()).minuteRateInMicros(60)).isEqualTo(1_000_000L);
+        assertThat(table.costInMicros(newYearsEve, newYearsEve.plusHours(2))).isEqualTo(12_000_000L);
+        assertThat(table.costInMicros(newYearsEve.plusHours(2), newYearsEve.plusHours(4))).isEqualTo(66_000_000L);
+        assertThat(table.costInMicros(newYearsEve.minusDays(1), newYearsEve.plusDays(2)))
+                .isEqualTo(sumOfMinuteRates(table, newYearsEve.minusDays(1), newYearsEve.plusDays(2)));
+    }
+
+    @Test
+    public void shouldNotContinueWeeklyPeriodsReplacedOnDate() {
+        WeekTable table = createTable();
+        LocalDateTime dayAfterChristmas = CHRISTMAS.plusDays(1).atStartOfDay();
+
+        assertThat(table.costInMicros(dayAfterChristmas, dayAfterChristmas.plusHours(1))).isEqualTo(60_000_000L);
+        assertThat(table.costInMicros(dayAfterChristmas.plusDays(1), dayAfterChristmas.plusDays(1).plusHours(1)))
+                .isEqualTo(30_000_000L);
+    }
+
+    @Test
+    public void shouldReplaceWeeklyPricesOnDateOfOverride() {
+        WeekTable table = createTable();
+        LocalDateTime christmas = CHRISTMAS.atStartOfDay();
+
+        assertThat(table.costInMicros(christmas, christmas.plusDays(1))).isEqualTo((8 * 60 + 72 + 4 * 60) * 1_000_000L);
+        assertThat(table.costInMicros(christmas.minusHours(1), christmas.plusHours(1))).isEqualTo(90_000_000L);
+    }
+
+    @Test
+    public void shouldChargeManyWeeksCrossingOverrides() {
+        WeekTable table = createTable();
+        LocalDateTime start = LocalDateTime.of(2019, Month.NOVEMBER, 20, 13, 17);
+
+        for (int days = 0; days < 60; days += 3) {
+            LocalDateTime end = start.plusDays(days).plusMinutes(days * 37);
+            assertThat(table.costInMicros(start, end)).isEqualTo(sumOfMinuteRates(table, start, end));
+        }
+    }
+
+    @Test
+    public void shouldCalculateCostCurveOfDayBeforeOverride() {
+        WeekTable table = createTable();
+        LocalDate christmasEve = CHRISTMAS.minusDays(1);
+        int minutes = 180;
+
+        long[] curve = table.costCurveInMicros(christmasEve, minutes);
+
+        for (int start = 0; start < 1440; start += 7) {
+            LocalDateTime processStart = christmasEve.atStartOfDay().plusMinutes(start);
+            assertThat(curve[start]).isEqualTo(table.costInMicros(processStart, processStart.plusMinutes(minutes)));
+        }
+        assertThat(table.curvePattern(christmasEve, minutes)).isEqualTo(christmasEve);
+        assertThat(table.curvePattern(christmasEve.minusDays(7), minutes)).isEqualTo(DayOfWeek.TUESDAY);
+    }
+
+    @Test
+    public void shouldLocateStartWithinWeekUnlessOverrideIsCrossed() {
+        WeekTable table = createTable();
+        LocalDateTime tuesday = LocalDateTime.of(2019, Month.DECEMBER, 17, 1, 0);
+
+        assertThat(table.periodicMinuteOf(tuesday, tuesday.plusHours(2))).isEqualTo(1440 + 60);
+        assertThat(table.periodicMinuteOf(tuesday, tuesday.plusDays(8))).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldRequireBasicPriceOnlyOnDaysWithUncoveredMinutes() {
+        Price weekendPrice = createPrice(0.25, LocalTime.of(0, 0), LocalTime.of(0, 0));
+        weekendPrice.setDays(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+        WeekTable table = WeekTable.compile(Collections.singletonList(weekendPrice));
+        LocalDateTime saturday = LocalDateTime.of(2019, Month.APRIL, 6, 0, 0);
+
+        assertThat(table.costInMicros(saturday, saturday.plusDays(2))).isEqualTo(720_000_000L);
+        assertThatExceptionOfType(NotEnoughDataException.class)
+                .isThrownBy(() -> table.costInMicros(saturday, saturday.plusDays(3)))
+                .withMessage("Basic price is missing");
+        assertThat(table.costCurveInMicros(saturday.toLocalDate().plusDays(1), 60)[1439])
+                .isEqualTo(TariffTable.UNPRICED);
+    }
+}